@@ -0,0 +1,47 @@
+package io.github.gitbucket.solidbase.manager;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures checking existence of the VERSIONS table in a database which has many tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JDBCVersionManagerBenchmark {
+
+    @Param({"10", "2000"})
+    public int tables;
+
+    private Connection conn;
+    private JDBCVersionManager versionManager;
+
+    @Setup
+    public void setup() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:versions" + tables, "sa", "sa");
+        for(int i = 0; i < tables; i++){
+            updateDatabase(conn, "CREATE TABLE TABLE" + i + " (ID INT PRIMARY KEY)");
+        }
+        versionManager = new JDBCVersionManager(conn);
+        versionManager.initialize();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Benchmark
+    public boolean checkTableExist(){
+        return versionManager.checkTableExist();
+    }
+
+}
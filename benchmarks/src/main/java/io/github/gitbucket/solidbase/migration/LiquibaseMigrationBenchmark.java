@@ -0,0 +1,57 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import io.github.gitbucket.solidbase.model.Module;
+import io.github.gitbucket.solidbase.model.Version;
+import liquibase.database.Database;
+import liquibase.database.core.H2Database;
+import liquibase.database.core.SQLiteDatabase;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the whole migration by <code>LiquibaseMigration</code> against an empty in-memory database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LiquibaseMigrationBenchmark {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    @Param({"h2", "sqlite"})
+    public String database;
+
+    private Module module;
+    private ClassLoader classLoader;
+
+    @Setup
+    public void setup(){
+        module = new Module("bench", new Version("1.0.0", new LiquibaseMigration()));
+        classLoader = Thread.currentThread().getContextClassLoader();
+    }
+
+    @Benchmark
+    public void migrate() throws Exception {
+        String url;
+        Database db;
+        if(database.equals("h2")){
+            url = "jdbc:h2:mem:bench" + COUNTER.incrementAndGet();
+            db = new H2Database();
+        } else {
+            url = "jdbc:sqlite::memory:";
+            db = new SQLiteDatabase();
+        }
+        try (Connection conn = DriverManager.getConnection(url, "sa", "sa")) {
+            new Solidbase().migrate(conn, classLoader, db, module);
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package io.github.gitbucket.solidbase.migration;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures preprocessing a large Liquibase changelog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LiquibaseXmlPreProcessorBenchmark {
+
+    @Param({"10", "500"})
+    public int tables;
+
+    private String source;
+    private LiquibaseXmlPreProcessor preProcessor;
+
+    @Setup
+    public void setup(){
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<changeSet>\n");
+        for(int i = 0; i < tables; i++){
+            sb.append("  <createTable tableName=\"table").append(i).append("\">\n");
+            sb.append("    <column name=\"id\" type=\"int\" autoIncrement=\"true\" primaryKey=\"true\" nullable=\"false\"/>\n");
+            for(int j = 0; j < 10; j++){
+                sb.append("    <column name=\"column").append(j).append("\" type=\"varchar(100)\" nullable=\"false\"/>\n");
+            }
+            sb.append("  </createTable>\n");
+        }
+        sb.append("</changeSet>\n");
+        source = sb.toString();
+        preProcessor = new LiquibaseXmlPreProcessor();
+    }
+
+    @Benchmark
+    public String preProcess() throws Exception {
+        return preProcessor.preProcess("bench", "1.0.0", source);
+    }
+
+}
@@ -0,0 +1,52 @@
+package io.github.gitbucket.solidbase.migration;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures splitting a large SQL script into statements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SqlMigrationBenchmark {
+
+    @Param({"1000", "100000"})
+    public int statements;
+
+    private String sql;
+    private SqlMigration migration;
+
+    @Setup
+    public void setup(){
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < statements; i++){
+            sb.append("-- row ").append(i).append('\n');
+            sb.append("INSERT INTO PERSON (ID, FIRSTNAME, LASTNAME) VALUES (")
+              .append(i).append(", 'first''s; name ").append(i).append("', 'last name');\n");
+        }
+        sql = sb.toString();
+        migration = new SqlMigration();
+    }
+
+    @Benchmark
+    public List<String> splitMultiStatementSql(){
+        return migration.splitMultiStatementSql(sql);
+    }
+
+    @Benchmark
+    public int lexStatements(){
+        SqlLexer lexer = new SqlLexer(sql);
+        int count = 0;
+        while(lexer.next()){
+            count++;
+        }
+        return count;
+    }
+
+}
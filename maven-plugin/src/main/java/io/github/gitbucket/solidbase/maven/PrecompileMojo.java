@@ -0,0 +1,209 @@
+package io.github.gitbucket.solidbase.maven;
+
+import io.github.gitbucket.solidbase.migration.ChangeLogPrecompiler;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Precompiles Liquibase changelogs in the output directory into SQL scripts for each database in parallel.
+ * <p>
+ * Scripts are written to <code>solidbase-precompiled</code> in the output directory, and
+ * {@link io.github.gitbucket.solidbase.migration.LiquibaseMigration} uses them instead of the changelogs at runtime.
+ * A changelog with a database suffix such as <code>core_1.0.0_mysql.xml</code> is compiled only for that database,
+ * and a changelog without a suffix is compiled only for databases which don't have a specific one.
+ * Scripts are used only for databases of the given minimum version or later, and Liquibase assumes the newest version
+ * of databases whose version isn't given.
+ * </p>
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;io.github.gitbucket&lt;/groupId&gt;
+ *   &lt;artifactId&gt;solidbase-maven-plugin&lt;/artifactId&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;goals&gt;&lt;goal&gt;precompile&lt;/goal&gt;&lt;/goals&gt;
+ *       &lt;configuration&gt;
+ *         &lt;includes&gt;&lt;include&gt;update/*.xml&lt;/include&gt;&lt;/includes&gt;
+ *       &lt;/configuration&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ */
+@Mojo(name = "precompile", defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class PrecompileMojo extends AbstractMojo {
+
+    /**
+     * The directory which contains changelogs. Scripts are written to <code>solidbase-precompiled</code> in it.
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File outputDirectory;
+
+    /**
+     * The compile classpath to resolve resources referred by changelogs.
+     */
+    @Parameter(defaultValue = "${project.compileClasspathElements}", readonly = true, required = true)
+    private List<String> classpathElements;
+
+    /**
+     * Glob patterns of changelogs relative to the output directory.
+     */
+    @Parameter(required = true)
+    private List<String> includes;
+
+    /**
+     * Glob patterns of files to exclude from <code>includes</code>.
+     */
+    @Parameter
+    private List<String> excludes = new ArrayList<>();
+
+    /**
+     * Short names of Liquibase databases to compile changelogs for.
+     */
+    @Parameter
+    private List<String> databases = Arrays.asList("h2", "mysql", "postgresql", "sqlite");
+
+    /**
+     * Minimum versions of databases such as <code>&lt;postgresql&gt;12.0&lt;/postgresql&gt;</code> to compile changelogs for.
+     */
+    @Parameter
+    private Map<String, String> databaseVersions = new HashMap<>();
+
+    /**
+     * The number of threads. 0 uses the number of available processors.
+     */
+    @Parameter(defaultValue = "0")
+    private int threads;
+
+    @Parameter(defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if(skip || !outputDirectory.isDirectory()){
+            return;
+        }
+        Path root = outputDirectory.toPath();
+        try {
+            List<String> changeLogs = findChangeLogs(root);
+            if(changeLogs.isEmpty()){
+                getLog().info("No changelogs to precompile");
+                return;
+            }
+
+            List<URL> urls = new ArrayList<>();
+            urls.add(outputDirectory.toURI().toURL());
+            for(String element: classpathElements){
+                urls.add(new File(element).toURI().toURL());
+            }
+
+            try (URLClassLoader classLoader = new URLClassLoader(urls.toArray(new URL[0]), getClass().getClassLoader())) {
+                ChangeLogPrecompiler precompiler = new ChangeLogPrecompiler(classLoader);
+                ExecutorService executor = Executors.newFixedThreadPool(
+                        threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+                try {
+                    List<Future<Boolean>> futures = new ArrayList<>();
+                    for(String changeLog: changeLogs){
+                        for(String database: databases){
+                            if(isTarget(root, changeLog, database)){
+                                futures.add(executor.submit(() -> precompile(precompiler, root, changeLog, database)));
+                            }
+                        }
+                    }
+                    int count = 0;
+                    for(Future<Boolean> future: futures){
+                        if(future.get()){
+                            count++;
+                        }
+                    }
+                    getLog().info("Precompiled " + count + " of " + futures.size() + " changelogs");
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        } catch(ExecutionException ex){
+            throw new MojoExecutionException("Failed to precompile changelogs", ex.getCause());
+        } catch(Exception ex){
+            throw new MojoExecutionException("Failed to precompile changelogs", ex);
+        }
+    }
+
+    private List<String> findChangeLogs(Path root) throws IOException {
+        List<PathMatcher> includeMatchers = toMatchers(includes);
+        List<PathMatcher> excludeMatchers = toMatchers(excludes);
+        Path precompiled = root.resolve(ChangeLogPrecompiler.DIRECTORY);
+
+        try (Stream<Path> files = Files.walk(root)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> file.toString().endsWith(".xml"))
+                    .filter(file -> !file.startsWith(precompiled))
+                    .map(root::relativize)
+                    .filter(file -> includeMatchers.stream().anyMatch(matcher -> matcher.matches(file)))
+                    .filter(file -> excludeMatchers.stream().noneMatch(matcher -> matcher.matches(file)))
+                    .map(file -> file.toString().replace(File.separatorChar, '/'))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<PathMatcher> toMatchers(List<String> patterns){
+        return patterns.stream()
+                .map(pattern -> FileSystems.getDefault().getPathMatcher("glob:" + pattern))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns <code>true</code> if the changelog is used for the database at runtime.
+     */
+    private boolean isTarget(Path root, String changeLog, String database){
+        String baseName = changeLog.substring(0, changeLog.length() - ".xml".length());
+        for(String other: databases){
+            if(baseName.endsWith("_" + other)){
+                return other.equals(database);
+            }
+        }
+        // A changelog for the specific database is preferred
+        return !Files.exists(root.resolve(baseName + "_" + database + ".xml"));
+    }
+
+    private boolean precompile(ChangeLogPrecompiler precompiler, Path root, String changeLog, String database) throws Exception {
+        Path file = root.resolve(ChangeLogPrecompiler.getPrecompiledPath(changeLog, database));
+        String script = precompiler.precompile(changeLog, database, databaseVersions.get(database));
+        if(script == null){
+            getLog().info("Skipped " + changeLog + " for " + database + " because it can't be precompiled");
+            Files.deleteIfExists(file);
+            return false;
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+        getLog().debug("Precompiled " + changeLog + " for " + database);
+        return true;
+    }
+
+}
@@ -0,0 +1,46 @@
+package io.github.gitbucket.solidbase;
+
+/**
+ * Thrown when resources of a version which has been already applied are modified.
+ */
+public class ChecksumMismatchException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String moduleId;
+    private final String version;
+    private final String expected;
+    private final String actual;
+
+    public ChecksumMismatchException(String moduleId, String version, String expected, String actual){
+        super("Migration of " + moduleId + " " + version + " has been modified after it was applied " +
+                "(expected checksum: " + expected + ", actual checksum: " + actual + ")");
+        this.moduleId = moduleId;
+        this.version = version;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public String getModuleId(){
+        return this.moduleId;
+    }
+
+    public String getVersion(){
+        return this.version;
+    }
+
+    /**
+     * Returns the checksum recorded when the version was applied.
+     */
+    public String getExpected(){
+        return this.expected;
+    }
+
+    /**
+     * Returns the checksum of current resources of the version.
+     */
+    public String getActual(){
+        return this.actual;
+    }
+
+}
@@ -0,0 +1,233 @@
+package io.github.gitbucket.solidbase;
+
+import io.github.gitbucket.solidbase.listener.MigrationListener;
+import io.github.gitbucket.solidbase.migration.CancellationToken;
+import io.github.gitbucket.solidbase.migration.Migration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The result of asynchronous migration started by
+ * {@link Solidbase#migrateAsync(javax.sql.DataSource, ClassLoader, java.util.function.Supplier, java.util.Collection, java.util.concurrent.Executor)}.
+ * <p>
+ * The progress of the running migration can be read by getters, for example, to be reported by health checks.
+ * </p>
+ * <p>
+ * Cancellation is cooperative. {@link #cancel(boolean)} and {@link #cancelAfter(long, TimeUnit)} complete this future
+ * immediately, cancel the running JDBC statement, and the migration stops before the next statement or migration.
+ * Changes of the interrupted version are rolled back in transactional mode. {@link #whenTerminated()} tells when
+ * the migration actually stops and its connection is closed.
+ * </p>
+ */
+public class MigrationFuture extends CompletableFuture<Void> {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "solidbase-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CancellationToken cancellationToken = new CancellationToken();
+    private final CompletableFuture<Void> termination = new CompletableFuture<>();
+    private final ProgressListener listener;
+
+    private volatile String currentModuleId;
+    private volatile String currentVersion;
+    private volatile String currentStatement;
+    private final AtomicInteger completedModules = new AtomicInteger();
+    private final AtomicInteger completedVersions = new AtomicInteger();
+    private final LongAdder completedStatements = new LongAdder();
+
+    MigrationFuture(MigrationListener listener){
+        this.listener = new ProgressListener(listener);
+    }
+
+    /**
+     * Returns the id of the module being migrated, or <code>null</code> if no module is being migrated.
+     */
+    public String getCurrentModuleId(){
+        return currentModuleId;
+    }
+
+    /**
+     * Returns the version being migrated, or <code>null</code> if no version is being migrated.
+     */
+    public String getCurrentVersion(){
+        return currentVersion;
+    }
+
+    /**
+     * Returns the SQL statement being executed, or <code>null</code> if no statement is being executed.
+     */
+    public String getCurrentStatement(){
+        return currentStatement;
+    }
+
+    public int getCompletedModules(){
+        return completedModules.get();
+    }
+
+    public int getCompletedVersions(){
+        return completedVersions.get();
+    }
+
+    public long getCompletedStatements(){
+        return completedStatements.sum();
+    }
+
+    /**
+     * Returns a future which is completed when the migration thread stops, even if this future has been cancelled.
+     */
+    public CompletableFuture<Void> whenTerminated(){
+        return termination;
+    }
+
+    /**
+     * Cancels the migration. Running statements are cancelled by <code>Statement.cancel()</code>
+     * regardless of <code>mayInterruptIfRunning</code>, and threads are never interrupted.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning){
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        cancellationToken.cancel();
+        return cancelled;
+    }
+
+    /**
+     * Cancels the migration if it doesn't complete within the given time.
+     * This future is completed exceptionally with <code>TimeoutException</code> then.
+     *
+     * @param timeout the timeout
+     * @param unit the unit of the timeout
+     * @return this future
+     */
+    public MigrationFuture cancelAfter(long timeout, TimeUnit unit){
+        ScheduledFuture<?> task = SCHEDULER.schedule(() -> {
+            if(completeExceptionally(new TimeoutException("Migration did not complete within " + unit.toMillis(timeout) + "ms"))){
+                cancellationToken.cancel();
+            }
+        }, timeout, unit);
+        whenComplete((result, ex) -> task.cancel(false));
+        return this;
+    }
+
+    CancellationToken getCancellationToken(){
+        return cancellationToken;
+    }
+
+    MigrationListener getListener(){
+        return listener;
+    }
+
+    void terminate(){
+        termination.complete(null);
+    }
+
+    /**
+     * Records progress and forwards events to the listener set to {@link Solidbase}.
+     */
+    private class ProgressListener implements MigrationListener {
+
+        private final MigrationListener listener;
+
+        ProgressListener(MigrationListener listener){
+            this.listener = listener;
+        }
+
+        @Override
+        public void onModuleStart(String moduleId){
+            currentModuleId = moduleId;
+            if(listener != null){
+                listener.onModuleStart(moduleId);
+            }
+        }
+
+        @Override
+        public void onModuleEnd(String moduleId, long elapsedNanos, Throwable failure){
+            currentModuleId = null;
+            if(failure == null){
+                completedModules.incrementAndGet();
+            }
+            if(listener != null){
+                listener.onModuleEnd(moduleId, elapsedNanos, failure);
+            }
+        }
+
+        @Override
+        public void onVersionStart(String moduleId, String version){
+            currentVersion = version;
+            if(listener != null){
+                listener.onVersionStart(moduleId, version);
+            }
+        }
+
+        @Override
+        public void onVersionEnd(String moduleId, String version, long elapsedNanos, Throwable failure){
+            currentVersion = null;
+            if(failure == null){
+                completedVersions.incrementAndGet();
+            }
+            if(listener != null){
+                listener.onVersionEnd(moduleId, version, elapsedNanos, failure);
+            }
+        }
+
+        @Override
+        public void onMigrationStart(String moduleId, String version, Migration migration){
+            if(listener != null){
+                listener.onMigrationStart(moduleId, version, migration);
+            }
+        }
+
+        @Override
+        public void onMigrationEnd(String moduleId, String version, Migration migration, long elapsedNanos, Throwable failure){
+            if(listener != null){
+                listener.onMigrationEnd(moduleId, version, migration, elapsedNanos, failure);
+            }
+        }
+
+        @Override
+        public void onStatementStart(String moduleId, String version, String sql){
+            currentStatement = sql;
+            if(listener != null){
+                listener.onStatementStart(moduleId, version, sql);
+            }
+        }
+
+        @Override
+        public void onStatementEnd(String moduleId, String version, String sql, long elapsedNanos, int rowCount, Throwable failure){
+            currentStatement = null;
+            if(failure == null){
+                completedStatements.increment();
+            }
+            if(listener != null){
+                listener.onStatementEnd(moduleId, version, sql, elapsedNanos, rowCount, failure);
+            }
+        }
+
+        @Override
+        public void onBatchEnd(String moduleId, String version, int statementCount, long elapsedNanos, int rowCount, Throwable failure){
+            if(failure == null){
+                completedStatements.add(statementCount);
+            }
+            if(listener != null){
+                listener.onBatchEnd(moduleId, version, statementCount, elapsedNanos, rowCount, failure);
+            }
+        }
+
+        @Override
+        public void onBlockingStatement(String moduleId, String version, String sql){
+            if(listener != null){
+                listener.onBlockingStatement(moduleId, version, sql);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package io.github.gitbucket.solidbase;
+
+import io.github.gitbucket.solidbase.model.Module;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dependency graph of modules.
+ * <p>
+ * Dependencies on modules which are not contained in the graph are regarded as already satisfied.
+ * </p>
+ */
+class ModuleGraph {
+
+    private final Map<String, Module> modules = new LinkedHashMap<>();
+    private final List<Module> sortedModules = new ArrayList<>();
+
+    ModuleGraph(Collection<Module> modules){
+        for(Module module: modules){
+            if(this.modules.put(module.getModuleId(), module) != null){
+                throw new IllegalArgumentException("Duplicated module: " + module.getModuleId());
+            }
+        }
+        // Topological sort which keeps the given order as far as possible
+        Map<String, Module> remaining = new LinkedHashMap<>(this.modules);
+        while(!remaining.isEmpty()){
+            Module next = null;
+            for(Module module: remaining.values()){
+                if(getDependencies(module).stream().noneMatch(m -> remaining.containsKey(m.getModuleId()))){
+                    next = module;
+                    break;
+                }
+            }
+            if(next == null){
+                throw new IllegalArgumentException("Circular dependency between modules: " + remaining.keySet());
+            }
+            remaining.remove(next.getModuleId());
+            sortedModules.add(next);
+        }
+    }
+
+    /**
+     * Returns modules in the order that every module comes after its dependencies.
+     */
+    List<Module> getSortedModules(){
+        return this.sortedModules;
+    }
+
+    /**
+     * Returns dependencies of the given module which are contained in this graph.
+     */
+    List<Module> getDependencies(Module module){
+        List<Module> result = new ArrayList<>();
+        for(String moduleId: module.getDependencies()){
+            Module dependency = modules.get(moduleId);
+            if(dependency != null){
+                result.add(dependency);
+            }
+        }
+        return result;
+    }
+
+}
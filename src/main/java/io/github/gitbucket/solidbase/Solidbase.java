@@ -1,55 +1,1029 @@
 package io.github.gitbucket.solidbase;
 
+import io.github.gitbucket.solidbase.listener.MigrationListener;
+import io.github.gitbucket.solidbase.manager.CachedJDBCVersionManager;
+import io.github.gitbucket.solidbase.manager.JDBCLockManager;
 import io.github.gitbucket.solidbase.manager.JDBCVersionManager;
 import io.github.gitbucket.solidbase.manager.VersionManager;
+import io.github.gitbucket.solidbase.migration.CancellationToken;
+import io.github.gitbucket.solidbase.migration.ChangeLogCache;
+import io.github.gitbucket.solidbase.migration.ChecksumMigration;
+import io.github.gitbucket.solidbase.migration.IndependentMigration;
 import io.github.gitbucket.solidbase.migration.Migration;
+import io.github.gitbucket.solidbase.migration.PlannableMigration;
+import io.github.gitbucket.solidbase.model.MigrationPlan;
 import io.github.gitbucket.solidbase.model.Module;
 import io.github.gitbucket.solidbase.model.Version;
 import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
 import liquibase.database.jvm.JdbcConnection;
 
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class Solidbase {
 
     public static String CONNECTION = "solidbase.context.connection";
     public static String CLASSLOADER = "solidbase.context.classloader";
     public static String DATABASE = "solidbase.context.database";
+    public static String BATCH_SIZE = "solidbase.context.batchSize";
+    public static String CHANGELOG_CACHE = "solidbase.context.changeLogCache";
+    public static String LISTENER = "solidbase.context.listener";
+    public static String ONLINE_DDL = "solidbase.context.onlineDdl";
+    public static String DATA_SOURCE = "solidbase.context.dataSource";
+    public static String DATABASE_FACTORY = "solidbase.context.databaseFactory";
+    public static String CANCELLATION_TOKEN = "solidbase.context.cancellationToken";
+    public static String TRANSACTION = "solidbase.context.transaction";
+    public static String MIGRATION_EXECUTOR = "solidbase.context.migrationExecutor";
+
+    private static final String LOCK_NAME = "solidbase";
+
+    /**
+     * Short names of databases which roll back DDL to savepoints. <code>Database.supportsDDLInTransaction()</code> is
+     * also true for databases which commit implicitly on DDL such as H2 and MySQL.
+     */
+    private static final Set<String> TRANSACTIONAL_DDL_DATABASES = new HashSet<>(Arrays.asList("postgresql", "sqlite"));
+
+    private int batchSize = 0;
+    private ChangeLogCache changeLogCache = null;
+    private boolean transactional = false;
+    private int versionsPerTransaction = 1;
+    private MigrationListener listener = null;
+    private boolean checksumEnabled = false;
+    private boolean onlineDdl = false;
+    private boolean lockEnabled = false;
+    private long lockTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+    private long lockExpirationMillis = TimeUnit.HOURS.toMillis(1);
+    private int migrationParallelism = 4;
+
+    /**
+     * Returns the maximum number of DML statements which are sent to the database in a batch.
+     */
+    public int getBatchSize(){
+        return this.batchSize;
+    }
+
+    /**
+     * Enables batched execution of consecutive DML statements in <code>SqlMigration</code> and <code>LiquibaseMigration</code>.
+     *
+     * @param batchSize the maximum number of statements in a batch. 0 or 1 disables batching (default).
+     */
+    public void setBatchSize(int batchSize){
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the cache of SQL statements generated from Liquibase changelogs.
+     */
+    public ChangeLogCache getChangeLogCache(){
+        return this.changeLogCache;
+    }
+
+    /**
+     * Sets the cache of SQL statements generated from Liquibase changelogs.
+     * <code>LiquibaseMigration</code> skips parsing changelogs and generating SQL if they are cached.
+     *
+     * @param changeLogCache the cache, or <code>null</code> to disable caching (default)
+     */
+    public void setChangeLogCache(ChangeLogCache changeLogCache){
+        this.changeLogCache = changeLogCache;
+    }
+
+    public boolean isTransactional(){
+        return this.transactional;
+    }
+
+    /**
+     * Enables transactional execution.
+     * <p>
+     * On PostgreSQL and SQLite, which can roll back DDL in a transaction, versions are migrated in transactions
+     * and the version of the module is updated in the same transaction. Other databases such as H2 and MySQL commit
+     * implicitly on DDL, so migrations are executed in the current transaction mode of the connection as before.
+     * </p>
+     *
+     * @param transactional true to enable transactional execution (default is false)
+     */
+    public void setTransactional(boolean transactional){
+        this.transactional = transactional;
+    }
+
+    public int getVersionsPerTransaction(){
+        return this.versionsPerTransaction;
+    }
+
+    /**
+     * Sets the number of versions committed in a transaction in transactional execution.
+     *
+     * @param versionsPerTransaction the number of versions in a transaction (default is 1)
+     */
+    public void setVersionsPerTransaction(int versionsPerTransaction){
+        this.versionsPerTransaction = versionsPerTransaction;
+    }
+
+    public MigrationListener getListener(){
+        return this.listener;
+    }
+
+    /**
+     * Sets the listener which receives module, version, migration and statement events.
+     *
+     * @param listener the listener, or <code>null</code> to disable events (default)
+     */
+    public void setListener(MigrationListener listener){
+        this.listener = listener;
+    }
+
+    public boolean isChecksumEnabled(){
+        return this.checksumEnabled;
+    }
+
+    /**
+     * Enables checksums of migrations.
+     * <p>
+     * The fingerprint of the module definition, which covers versions and fingerprints of their resources such as
+     * CRCs of entries in jar files, is recorded in the CHECKSUM column of the VERSIONS table, and checksums of each version
+     * are recorded in the VERSION_CHECKSUMS table. If the fingerprint matches the recorded one, the module is regarded as
+     * up to date without reading resources or looking up pending versions.
+     * Otherwise, checksums of versions which have been already applied are verified and
+     * {@link ChecksumMismatchException} is thrown if their resources have been modified.
+     * </p>
+     * <p>
+     * Only {@link ChecksumMigration}s such as <code>SqlMigration</code> and <code>LiquibaseMigration</code> contribute
+     * their resources to checksums.
+     * </p>
+     *
+     * @param checksumEnabled true to enable checksums (default is false)
+     */
+    public void setChecksumEnabled(boolean checksumEnabled){
+        this.checksumEnabled = checksumEnabled;
+    }
+
+    public boolean isOnlineDdl(){
+        return this.onlineDdl;
+    }
+
+    /**
+     * Enables online DDL in <code>LiquibaseMigration</code>.
+     * <p>
+     * <code>createIndex</code>, <code>addColumn</code> and <code>addForeignKeyConstraint</code> are rewritten into
+     * non-blocking forms of PostgreSQL, MySQL and MariaDB such as <code>CREATE INDEX CONCURRENTLY</code>,
+     * <code>ALGORITHM=INPLACE, LOCK=NONE</code> and <code>NOT VALID</code> constraints followed by <code>VALIDATE CONSTRAINT</code>.
+     * Statements which can't be executed online are reported to {@link MigrationListener#onBlockingStatement(String, String, String)}.
+     * </p>
+     * <p>
+     * Statements which can't be executed in a transaction block such as <code>CREATE INDEX CONCURRENTLY</code> commit
+     * the current transaction and are executed in auto-commit mode. In transactional execution, indexes are created
+     * without <code>CONCURRENTLY</code> and reported as blocking statements, and such statements in SQL files fail.
+     * </p>
+     * <p>
+     * If <code>CREATE INDEX CONCURRENTLY</code> fails, PostgreSQL leaves an INVALID index and the retry fails because
+     * it already exists. Drop the index by <code>DROP INDEX CONCURRENTLY</code> before migrating again.
+     * </p>
+     *
+     * @param onlineDdl true to enable online DDL (default is false)
+     */
+    public void setOnlineDdl(boolean onlineDdl){
+        this.onlineDdl = onlineDdl;
+    }
+
+    public boolean isLockEnabled(){
+        return this.lockEnabled;
+    }
+
+    /**
+     * Enables the migration lock to run Solidbase on multiple processes connected to the same database.
+     * <p>
+     * A module is migrated by only one process at a time by {@link JDBCLockManager}, and other processes wait until
+     * it's released, then migrate remaining versions. Modules which have no pending version, or whose fingerprint
+     * matches the recorded one if checksums are enabled, are not locked, so processes start without waiting
+     * if the database is up to date.
+     * The transaction of the connection is committed before the lock is released. If the migration fails on databases
+     * which use the SOLIDBASE_LOCK table, the transaction is rolled back instead because releasing the lock commits it.
+     * </p>
+     *
+     * @param lockEnabled true to enable the migration lock (default is false)
+     */
+    public void setLockEnabled(boolean lockEnabled){
+        this.lockEnabled = lockEnabled;
+    }
+
+    public long getLockTimeoutMillis(){
+        return this.lockTimeoutMillis;
+    }
+
+    /**
+     * Sets the maximum time to wait for the migration lock.
+     *
+     * @param lockTimeoutMillis the time in milliseconds (default is 10 minutes)
+     */
+    public void setLockTimeoutMillis(long lockTimeoutMillis){
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    public long getLockExpirationMillis(){
+        return this.lockExpirationMillis;
+    }
+
+    /**
+     * Sets the time after which the migration lock is regarded as left by a crashed process and taken over.
+     * It's used only on databases which don't support advisory locks, and must be longer than the longest migration.
+     *
+     * @param lockExpirationMillis the time in milliseconds (default is 1 hour)
+     */
+    public void setLockExpirationMillis(long lockExpirationMillis){
+        this.lockExpirationMillis = lockExpirationMillis;
+    }
+
+    /**
+     * Returns the maximum number of {@link IndependentMigration}s which are executed at the same time.
+     */
+    public int getMigrationParallelism(){
+        return migrationParallelism;
+    }
+
+    /**
+     * Sets the maximum number of {@link IndependentMigration}s which are executed at the same time.
+     * Each of them holds a connection of the <code>DataSource</code> while it's executed. Default is 4.
+     *
+     * @param migrationParallelism the maximum number of concurrent migrations
+     */
+    public void setMigrationParallelism(int migrationParallelism){
+        this.migrationParallelism = migrationParallelism;
+    }
 
     public void migrate(Connection conn, ClassLoader classLoader, Database database, Module module) throws Exception {
-        database.setConnection(new JdbcConnection(conn));
+        this.migrate(new JDBCVersionManager(conn), createContext(conn, classLoader, database), module);
+    }
 
-        Map<String, Object> context = new HashMap<>();
-        context.put(CONNECTION, conn);
-        context.put(CLASSLOADER, classLoader);
-        context.put(DATABASE, database);
+    /**
+     * Migrates a module using connections obtained from the given <code>DataSource</code>.
+     * <p>
+     * Versions are updated on a single connection, and consecutive {@link IndependentMigration}s in a version
+     * are executed concurrently on their own connections.
+     * </p>
+     *
+     * @param dataSource the data source
+     * @param classLoader the class loader to load migration resources
+     * @param databaseFactory the factory of the Liquibase database. It's called for each connection.
+     * @param module the module to migrate
+     */
+    public void migrate(DataSource dataSource, ClassLoader classLoader, Supplier<Database> databaseFactory,
+                        Module module) throws Exception {
+        ExecutorService migrationExecutor = newThreadPool("migration", migrationParallelism);
+        try (Connection conn = dataSource.getConnection()) {
+            migrateAndCommit(conn, createContext(dataSource, conn, classLoader, databaseFactory, migrationExecutor), module);
+        } finally {
+            migrationExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Migrates multiple modules using connections obtained from the given <code>DataSource</code>.
+     * <p>
+     * Modules are migrated one by one in the same way as {@link #migrate(Connection, ClassLoader, Database, Collection)},
+     * and consecutive {@link IndependentMigration}s in a version are executed concurrently on their own connections.
+     * </p>
+     *
+     * @param dataSource the data source
+     * @param classLoader the class loader to load migration resources
+     * @param databaseFactory the factory of the Liquibase database. It's called for each connection.
+     * @param modules the modules to migrate
+     */
+    public void migrate(DataSource dataSource, ClassLoader classLoader, Supplier<Database> databaseFactory,
+                        Collection<Module> modules) throws Exception {
+        List<Module> sortedModules = new ModuleGraph(modules).getSortedModules();
+        ExecutorService migrationExecutor = newThreadPool("migration", migrationParallelism);
+        try (Connection conn = dataSource.getConnection()) {
+            migrate(conn, createContext(dataSource, conn, classLoader, databaseFactory, migrationExecutor), sortedModules);
+        } finally {
+            migrationExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Migrates multiple modules asynchronously using connections obtained from the given <code>DataSource</code>.
+     * <p>
+     * Modules are migrated in the same way as {@link #migrate(DataSource, ClassLoader, Supplier, Collection)} by a task
+     * submitted to the given executor. Any executor can be used including <code>Executors.newVirtualThreadPerTaskExecutor()</code>
+     * on Java 21 or later. Events are sent to the listener set by {@link #setListener(MigrationListener)}, and the progress
+     * can be read from the returned future.
+     * </p>
+     * <pre>
+     * MigrationFuture future = solidbase.migrateAsync(dataSource, classLoader, PostgresDatabase::new, modules, executor)
+     *     .cancelAfter(30, TimeUnit.MINUTES);
+     * </pre>
+     *
+     * @param dataSource the data source
+     * @param classLoader the class loader to load migration resources
+     * @param databaseFactory the factory of the Liquibase database. It's called for each connection.
+     * @param modules the modules to migrate
+     * @param executor the executor which runs the migration
+     * @return the future which can cancel the migration
+     */
+    public MigrationFuture migrateAsync(DataSource dataSource, ClassLoader classLoader, Supplier<Database> databaseFactory,
+                                        Collection<Module> modules, Executor executor){
+        List<Module> sortedModules = new ModuleGraph(modules).getSortedModules();
+        MigrationFuture future = new MigrationFuture(listener);
+        executor.execute(() -> {
+            ExecutorService migrationExecutor = newThreadPool("migration", migrationParallelism);
+            try {
+                // Might have been cancelled before start
+                future.getCancellationToken().throwIfCancelled();
+                try (Connection conn = dataSource.getConnection()) {
+                    Map<String, Object> context = createContext(dataSource, conn, classLoader, databaseFactory, migrationExecutor);
+                    context.put(LISTENER, future.getListener());
+                    context.put(CANCELLATION_TOKEN, future.getCancellationToken());
+                    migrate(conn, context, sortedModules);
+                }
+                future.complete(null);
+            } catch(Throwable ex){
+                future.completeExceptionally(ex);
+            } finally {
+                migrationExecutor.shutdown();
+                future.terminate();
+            }
+        });
+        return future;
+    }
 
-        this.migrate(new JDBCVersionManager(conn), context, module);
+    private void migrate(Connection conn, Map<String, Object> context, List<Module> sortedModules) throws Exception {
+        VersionManager versionManager = new CachedJDBCVersionManager(conn);
+        for(Module module: sortedModules){
+            this.migrate(versionManager, context, module);
+            commit(conn);
+        }
+    }
+
+    /**
+     * Migrates multiple modules on the same connection.
+     * <p>
+     * Modules are migrated after modules declared by {@link Module#dependsOn(String...)}.
+     * Current versions of all modules are loaded by a single query.
+     * </p>
+     *
+     * @param conn the connection
+     * @param classLoader the class loader to load migration resources
+     * @param database the Liquibase database
+     * @param modules the modules to migrate
+     */
+    public void migrate(Connection conn, ClassLoader classLoader, Database database, Collection<Module> modules) throws Exception {
+        VersionManager versionManager = new CachedJDBCVersionManager(conn);
+        Map<String, Object> context = createContext(conn, classLoader, database);
+        for(Module module: new ModuleGraph(modules).getSortedModules()){
+            this.migrate(versionManager, context, module);
+        }
+    }
+
+    /**
+     * Migrates multiple modules concurrently.
+     * <p>
+     * Modules are migrated after modules declared by {@link Module#dependsOn(String...)}.
+     * Modules which don't depend on each other are migrated in parallel, and each of them uses its own connection
+     * obtained from the given <code>DataSource</code>. If migration of a module fails, modules depending on it are not migrated
+     * and the first failure is thrown after all running migrations finish.
+     * </p>
+     *
+     * @param dataSource the data source which provides a connection for each module
+     * @param classLoader the class loader to load migration resources
+     * @param databaseFactory the factory of the Liquibase database. It's called for each module.
+     * @param modules the modules to migrate
+     * @param parallelism the maximum number of modules which are migrated at the same time
+     */
+    public void migrate(DataSource dataSource, ClassLoader classLoader, Supplier<Database> databaseFactory,
+                        Collection<Module> modules, int parallelism) throws Exception {
+        ModuleGraph graph = new ModuleGraph(modules);
+
+        // Create tables in advance to avoid races between workers
+        try (Connection conn = dataSource.getConnection()) {
+            if(lockEnabled && !isInitialized(new JDBCVersionManager(conn))){
+                JDBCLockManager lockManager = new JDBCLockManager(conn, lockExpirationMillis);
+                lockManager.lock(LOCK_NAME, lockTimeoutMillis);
+                try {
+                    initialize(conn);
+                } finally {
+                    lockManager.unlock(LOCK_NAME);
+                }
+            } else {
+                initialize(conn);
+            }
+        }
+
+        ExecutorService executor = newThreadPool("module", parallelism);
+        // Independent migrations of all modules share the executor
+        ExecutorService migrationExecutor = newThreadPool("migration", migrationParallelism);
+        try {
+            Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+            for(Module module: graph.getSortedModules()){
+                CompletableFuture<?>[] dependencies = graph.getDependencies(module).stream()
+                        .map(dependency -> futures.get(dependency.getModuleId()))
+                        .toArray(CompletableFuture<?>[]::new);
+
+                futures.put(module.getModuleId(), CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+                    try (Connection conn = dataSource.getConnection()) {
+                        migrateAndCommit(conn, createContext(dataSource, conn, classLoader, databaseFactory, migrationExecutor), module);
+                    } catch(Exception ex){
+                        throw new CompletionException(ex);
+                    }
+                }, executor));
+            }
+
+            // Futures are in dependency order, so the first failure is the root cause
+            joinAll(futures.values());
+        } finally {
+            executor.shutdown();
+            migrationExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Creates the VERSIONS table and tables for checksums if they are enabled, and commits them.
+     */
+    private void initialize(Connection conn) throws Exception {
+        VersionManager versionManager = new JDBCVersionManager(conn);
+        versionManager.initialize();
+        if(checksumEnabled){
+            versionManager.initializeChecksums();
+        }
+        // Pooled connections might not be in auto-commit mode
+        commit(conn);
+    }
+
+    /**
+     * Migrates a module for multiple tenants concurrently.
+     * <p>
+     * Each tenant has its own database or schema, and its connection is obtained from the given provider.
+     * SQL generated from Liquibase changelogs is computed once per database type and default schema, and reused for tenants
+     * which have the same one.
+     * A failure of a tenant doesn't stop migration of other tenants.
+     * </p>
+     *
+     * @param tenantIds the tenant ids
+     * @param connectionProvider the provider of connections for tenants
+     * @param classLoader the class loader to load migration resources
+     * @param databaseFactory the factory of the Liquibase database. It's called for each tenant.
+     * @param module the module to migrate
+     * @param concurrency the maximum number of tenants which are migrated at the same time
+     * @return results for each tenant in the order of the given tenant ids
+     */
+    public List<TenantMigrationResult> migrateTenants(Collection<String> tenantIds, TenantConnectionProvider connectionProvider,
+                                                      ClassLoader classLoader, Supplier<Database> databaseFactory,
+                                                      Module module, int concurrency) throws InterruptedException {
+        ChangeLogCache cache = changeLogCache != null ? changeLogCache : new ChangeLogCache();
+
+        ExecutorService executor = newThreadPool("tenant", concurrency);
+        try {
+            List<Future<TenantMigrationResult>> futures = new ArrayList<>();
+            for(String tenantId: tenantIds){
+                futures.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    Exception failure = null;
+                    try (Connection conn = connectionProvider.getConnection(tenantId)) {
+                        Map<String, Object> context = createContext(conn, classLoader, databaseFactory.get());
+                        context.put(CHANGELOG_CACHE, cache);
+                        migrateAndCommit(conn, context, module);
+                    } catch(Exception ex){
+                        failure = ex;
+                    }
+                    return new TenantMigrationResult(tenantId, failure,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }));
+            }
+
+            List<TenantMigrationResult> results = new ArrayList<>();
+            for(Future<TenantMigrationResult> future: futures){
+                try {
+                    results.add(future.get());
+                } catch(ExecutionException ex){
+                    // never happens because the task catches all exceptions
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     public void migrate(VersionManager versionManager, Map<String, Object> context, Module module) throws Exception {
+        MigrationListener listener = (MigrationListener) context.get(LISTENER);
+        if(listener != null){
+            listener.onModuleStart(module.getModuleId());
+        }
+        long start = System.nanoTime();
+        try {
+            Connection conn = (Connection) context.get(CONNECTION);
+            if(lockEnabled && conn != null){
+                // Modules which are up to date are skipped without the lock
+                if(requiresLock(versionManager, context, module)){
+                    migrateWithLock(conn, versionManager, context, module);
+                }
+            } else {
+                migrateModule(versionManager, context, module);
+            }
+        } catch(Exception ex){
+            if(listener != null){
+                listener.onModuleEnd(module.getModuleId(), System.nanoTime() - start, ex);
+            }
+            throw ex;
+        }
+        if(listener != null){
+            listener.onModuleEnd(module.getModuleId(), System.nanoTime() - start, null);
+        }
+    }
+
+    /**
+     * Checks whether the module might have to be migrated. If checksums are enabled, the module is up to date when
+     * the fingerprint matches the recorded one. Otherwise, checksums are verified under the lock.
+     */
+    private boolean requiresLock(VersionManager versionManager, Map<String, Object> context, Module module) throws Exception {
+        if(!isInitialized(versionManager)){
+            return true;
+        }
         versionManager.initialize();
+        if(checksumEnabled){
+            String fingerprint = getFingerprint(module, context);
+            return !fingerprint.equals(versionManager.getFingerprint(module.getModuleId()));
+        }
+        return !getPendingVersions(module, versionManager.getCurrentVersion(module.getModuleId())).isEmpty();
+    }
+
+    /**
+     * Checks whether the VERSIONS table and tables for checksums if they are enabled exist, without creating them.
+     */
+    private boolean isInitialized(VersionManager versionManager) throws Exception {
+        return versionManager.isInitialized() && (!checksumEnabled || versionManager.isChecksumsInitialized());
+    }
+
+    private void migrateWithLock(Connection conn, VersionManager versionManager,
+                                 Map<String, Object> context, Module module) throws Exception {
+        JDBCLockManager lockManager = new JDBCLockManager(conn, lockExpirationMillis);
+        // Tables are shared by all modules
+        lockManager.lock(LOCK_NAME, lockTimeoutMillis);
+        try {
+            versionManager.initialize();
+            if(checksumEnabled){
+                versionManager.initializeChecksums();
+            }
+            commit(conn);
+        } catch(Exception ex){
+            rollbackBeforeUnlock(conn, lockManager, ex);
+            throw ex;
+        } finally {
+            lockManager.unlock(LOCK_NAME);
+        }
+
+        lockManager.lock(LOCK_NAME + "." + module.getModuleId(), lockTimeoutMillis);
+        try {
+            // Other processes might have migrated the module while waiting
+            versionManager.refresh();
+            migrateModule(versionManager, context, module);
+            // Other processes must see the new version after the lock is released
+            commit(conn);
+        } catch(Exception ex){
+            rollbackBeforeUnlock(conn, lockManager, ex);
+            throw ex;
+        } finally {
+            lockManager.unlock(LOCK_NAME + "." + module.getModuleId());
+        }
+    }
+
+    /**
+     * Rolls back changes of the failed migration if releasing the lock commits the transaction of the connection.
+     */
+    private static void rollbackBeforeUnlock(Connection conn, JDBCLockManager lockManager, Exception ex){
+        try {
+            if(lockManager.isCommittedOnUnlock() && !conn.getAutoCommit()){
+                conn.rollback();
+            }
+        } catch(SQLException e){
+            ex.addSuppressed(e);
+        }
+    }
+
+    private void migrateModule(VersionManager versionManager, Map<String, Object> context, Module module) throws Exception {
+        versionManager.initialize();
+
+        Map<String, String> checksums = null;
+        String fingerprint = null;
+        if(checksumEnabled){
+            versionManager.initializeChecksums();
+            fingerprint = getFingerprint(module, context);
+            if(fingerprint.equals(versionManager.getFingerprint(module.getModuleId()))){
+                return;
+            }
+            // Resources are read only if the module might have been changed
+            checksums = getChecksums(module, context);
+        }
+
         String currentVersion = versionManager.getCurrentVersion(module.getModuleId());
+        List<Version> versions = getPendingVersions(module, currentVersion);
+        // Nothing has been applied on a fresh install, which might be started from the baseline
+        if(checksums != null && currentVersion != null){
+            verifyChecksums(versionManager, module, versions, checksums);
+        }
 
+        Connection conn = (Connection) context.get(CONNECTION);
+        Database database = (Database) context.get(DATABASE);
+        if(transactional && conn != null && database != null && TRANSACTIONAL_DDL_DATABASES.contains(database.getShortName())){
+            migrateInTransaction(conn, versionManager, context, module, versions, checksums);
+        } else {
+            for(Version version: versions){
+                migrate(versionManager, context, module, version, checksums, true);
+                // Connections obtained from the DataSource are owned by Solidbase, so completed versions are committed
+                // to be kept even if a later version fails or is cancelled
+                if(conn != null && context.get(DATA_SOURCE) != null){
+                    commit(conn);
+                }
+            }
+        }
+
+        if(fingerprint != null){
+            versionManager.updateFingerprint(module.getModuleId(), fingerprint);
+        }
+    }
+
+    /**
+     * Computes checksums of all versions of the module. Migrations which aren't {@link ChecksumMigration} contribute only their positions.
+     *
+     * @return the map of versions and checksums in the order of versions
+     */
+    private Map<String, String> getChecksums(Module module, Map<String, Object> context) throws Exception {
+        return digestVersions(module, context, false);
+    }
+
+    /**
+     * Computes the fingerprint of the module definition from versions and {@link ChecksumMigration#fingerprint(String, String, Map)}
+     * of their migrations, which doesn't read resources in jar files.
+     */
+    private String getFingerprint(Module module, Map<String, Object> context) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append(module.getModuleId()).append('\n');
+        for(Map.Entry<String, String> fingerprint: digestVersions(module, context, true).entrySet()){
+            sb.append(fingerprint.getKey()).append('=').append(fingerprint.getValue()).append('\n');
+        }
+        return digest(sb.toString());
+    }
+
+    private Map<String, String> digestVersions(Module module, Map<String, Object> context, boolean fingerprint) throws Exception {
+        Map<String, String> digests = new LinkedHashMap<>();
+        for(Version version: module.getVersions()){
+            StringBuilder sb = new StringBuilder();
+            for(Migration migration: version.getMigrations()){
+                if(migration instanceof ChecksumMigration){
+                    ChecksumMigration checksumMigration = (ChecksumMigration) migration;
+                    sb.append(fingerprint ?
+                            checksumMigration.fingerprint(module.getModuleId(), version.getVersion(), context) :
+                            checksumMigration.checksum(module.getModuleId(), version.getVersion(), context));
+                } else {
+                    sb.append('-');
+                }
+                sb.append('\n');
+            }
+            digests.put(version.getVersion(), digest(sb.toString()));
+        }
+        return digests;
+    }
+
+    /**
+     * Verifies checksums of versions which have been already applied.
+     * Versions applied before checksums were enabled don't have checksums, so current checksums are recorded for them.
+     */
+    private void verifyChecksums(VersionManager versionManager, Module module, List<Version> pendingVersions,
+                                 Map<String, String> checksums) throws Exception {
+        Map<String, String> recorded = versionManager.getChecksums(module.getModuleId());
+        for(Version version: module.getVersions()){
+            if(pendingVersions.contains(version)){
+                break;
+            }
+            String expected = recorded.get(version.getVersion());
+            String actual = checksums.get(version.getVersion());
+            if(expected == null){
+                versionManager.updateChecksum(module.getModuleId(), version.getVersion(), actual);
+            } else if(!expected.equals(actual)){
+                throw new ChecksumMismatchException(module.getModuleId(), version.getVersion(), expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Computes the plan of migration of the module without modifying the database.
+     * <p>
+     * Pending versions are resolved in the same way as {@link #migrate(Connection, ClassLoader, Database, Module)},
+     * and SQL statements of {@link PlannableMigration}s such as <code>SqlMigration</code> and <code>LiquibaseMigration</code>
+     * are generated.
+     * </p>
+     *
+     * @param conn the connection
+     * @param classLoader the class loader to load migration resources
+     * @param database the Liquibase database
+     * @param module the module
+     * @return the plan
+     */
+    public MigrationPlan plan(Connection conn, ClassLoader classLoader, Database database, Module module) throws Exception {
+        return this.plan(new JDBCVersionManager(conn), createContext(conn, classLoader, database), module);
+    }
+
+    public MigrationPlan plan(VersionManager versionManager, Map<String, Object> context, Module module) throws Exception {
+        String currentVersion = null;
+        if(versionManager.isInitialized()){
+            currentVersion = versionManager.getCurrentVersion(module.getModuleId());
+        }
+
+        List<MigrationPlan.PlannedVersion> versions = new ArrayList<>();
+        for(Version version: getPendingVersions(module, currentVersion)){
+            List<MigrationPlan.PlannedMigration> migrations = new ArrayList<>();
+            for(Migration migration: version.getMigrations()){
+                List<String> statements = null;
+                if(migration instanceof PlannableMigration){
+                    statements = ((PlannableMigration) migration).plan(module.getModuleId(), version.getVersion(), context);
+                }
+                migrations.add(new MigrationPlan.PlannedMigration(migration.getClass().getName(), statements));
+            }
+            versions.add(new MigrationPlan.PlannedVersion(version.getVersion(), migrations));
+        }
+
+        Database database = (Database) context.get(DATABASE);
+        return new MigrationPlan(module.getModuleId(), database == null ? null : database.getShortName(), currentVersion, versions);
+    }
+
+    /**
+     * Returns versions of the module which are newer than the given current version.
+     * If the module has not been migrated yet and has a baseline, the baseline and versions after it are returned.
+     *
+     * @param module the module
+     * @param currentVersion the current version, or <code>null</code> if the module has not been migrated yet
+     * @return versions to be migrated
+     */
+    protected List<Version> getPendingVersions(Module module, String currentVersion){
+        List<Version> result = new ArrayList<>();
         boolean skip = true;
 
         if(currentVersion == null){
-            skip = false;
+            Version baseline = module.getBaseline();
+            if(baseline == null){
+                skip = false;
+            } else {
+                result.add(baseline);
+                currentVersion = baseline.getVersion();
+            }
         }
 
         for(Version version: module.getVersions()){
             if(!skip){
-                for(Migration migration: version.getMigrations()){
-                    migration.migrate(module.getModuleId(), version.getVersion(), context);
-                }
-                versionManager.updateVersion(module.getModuleId(), version.getVersion());
+                result.add(version);
             }
             if(version.getVersion().equals(currentVersion)){
                 skip = false;
             }
         }
+        return result;
+    }
+
+    /**
+     * Migrates a version. If <code>concurrent</code> is true and the context has a <code>DataSource</code>,
+     * consecutive {@link IndependentMigration}s are executed concurrently.
+     */
+    private void migrate(VersionManager versionManager, Map<String, Object> context, Module module, Version version,
+                         Map<String, String> checksums, boolean concurrent) throws Exception {
+        MigrationListener listener = (MigrationListener) context.get(LISTENER);
+        if(listener != null){
+            listener.onVersionStart(module.getModuleId(), version.getVersion());
+        }
+        long versionStart = System.nanoTime();
+        try {
+            List<Migration> migrations = version.getMigrations();
+            int i = 0;
+            while(i < migrations.size()){
+                int end = i + 1;
+                if(concurrent && context.get(DATA_SOURCE) != null && migrations.get(i) instanceof IndependentMigration){
+                    while(end < migrations.size() && migrations.get(end) instanceof IndependentMigration){
+                        end++;
+                    }
+                }
+                if(end - i > 1){
+                    migrateConcurrently(context, module, version, migrations.subList(i, end));
+                } else {
+                    migrate(context, module, version, migrations.get(i));
+                }
+                i = end;
+            }
+            updateVersion(versionManager, module, version, checksums);
+        } catch(Exception ex){
+            if(listener != null){
+                listener.onVersionEnd(module.getModuleId(), version.getVersion(), System.nanoTime() - versionStart, ex);
+            }
+            throw ex;
+        }
+        if(listener != null){
+            listener.onVersionEnd(module.getModuleId(), version.getVersion(), System.nanoTime() - versionStart, null);
+        }
+    }
+
+    private static void migrate(Map<String, Object> context, Module module, Version version, Migration migration) throws Exception {
+        CancellationToken cancellationToken = CancellationToken.fromContext(context);
+        if(cancellationToken != null){
+            cancellationToken.throwIfCancelled();
+        }
+
+        MigrationListener listener = (MigrationListener) context.get(LISTENER);
+        if(listener == null){
+            migration.migrate(module.getModuleId(), version.getVersion(), context);
+            return;
+        }
+
+        listener.onMigrationStart(module.getModuleId(), version.getVersion(), migration);
+        long start = System.nanoTime();
+        try {
+            migration.migrate(module.getModuleId(), version.getVersion(), context);
+        } catch(Exception ex){
+            listener.onMigrationEnd(module.getModuleId(), version.getVersion(), migration, System.nanoTime() - start, ex);
+            throw ex;
+        }
+        listener.onMigrationEnd(module.getModuleId(), version.getVersion(), migration, System.nanoTime() - start, null);
+    }
+
+    /**
+     * Executes independent migrations concurrently, each on its own connection obtained from the <code>DataSource</code>
+     * in the context. The version is updated on the original connection after all of them are committed.
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateConcurrently(Map<String, Object> context, Module module, Version version,
+                                     List<Migration> migrations) throws Exception {
+        DataSource dataSource = (DataSource) context.get(DATA_SOURCE);
+        Supplier<Database> databaseFactory = (Supplier<Database>) context.get(DATABASE_FACTORY);
+
+        // Other connections must see changes by preceding migrations
+        Connection conn = (Connection) context.get(CONNECTION);
+        if(conn != null){
+            commit(conn);
+        }
+
+        // The executor is shared by the whole migration unless the context is created by the caller
+        Executor sharedExecutor = (Executor) context.get(MIGRATION_EXECUTOR);
+        ExecutorService ownExecutor = sharedExecutor == null ?
+                newThreadPool("migration", Math.max(1, Math.min(migrationParallelism, migrations.size()))) : null;
+        Executor executor = sharedExecutor != null ? sharedExecutor : ownExecutor;
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for(Migration migration: migrations){
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try (Connection migrationConn = dataSource.getConnection()) {
+                        Database database = databaseFactory != null ? databaseFactory.get() :
+                                DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(migrationConn));
+                        database.setConnection(new JdbcConnection(migrationConn));
+
+                        Map<String, Object> migrationContext = new HashMap<>(context);
+                        migrationContext.put(CONNECTION, migrationConn);
+                        migrationContext.put(DATABASE, database);
+                        migrate(migrationContext, module, version, migration);
+                        commit(migrationConn);
+                    } catch(Exception ex){
+                        throw new CompletionException(ex);
+                    }
+                }, executor));
+            }
+            joinAll(futures);
+        } finally {
+            if(ownExecutor != null){
+                ownExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Creates a fixed thread pool whose threads are daemon threads named <code>solidbase-{name}-{number}</code>.
+     */
+    private static ExecutorService newThreadPool(String name, int threads){
+        AtomicInteger number = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "solidbase-" + name + "-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for all futures and throws the failure of the first failed future in the given order.
+     */
+    private static void joinAll(Collection<? extends CompletableFuture<?>> futures) throws Exception {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((result, ex) -> null).join();
+        for(CompletableFuture<?> future: futures){
+            try {
+                future.join();
+            } catch(CompletionException ex){
+                Throwable cause = ex.getCause();
+                if(cause instanceof Exception){
+                    throw (Exception) cause;
+                }
+                throw ex;
+            }
+        }
+    }
+
+    private void updateVersion(VersionManager versionManager, Module module, Version version,
+                               Map<String, String> checksums) throws Exception {
+        versionManager.updateVersion(module.getModuleId(), version.getVersion());
+        if(checksums != null){
+            versionManager.updateChecksum(module.getModuleId(), version.getVersion(), checksums.get(version.getVersion()));
+        }
+    }
+
+    /**
+     * Migrates versions in transactions which contain {@link #getVersionsPerTransaction()} versions.
+     * If a version fails, changes by the version are rolled back to the savepoint set before it,
+     * and preceding versions in the same transaction are committed.
+     */
+    private void migrateInTransaction(Connection conn, VersionManager versionManager, Map<String, Object> context,
+                                      Module module, List<Version> versions, Map<String, String> checksums) throws Exception {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        // Migrations must not commit the transaction
+        context.put(TRANSACTION, true);
+        try {
+            int count = 0;
+            for(Version version: versions){
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    // Independent migrations can't join the transaction
+                    migrate(versionManager, context, module, version, checksums, false);
+                } catch(Exception ex){
+                    try {
+                        conn.rollback(savepoint);
+                        conn.commit();
+                    } catch(SQLException e){
+                        ex.addSuppressed(e);
+                        ignoreException(conn::rollback);
+                    }
+                    throw ex;
+                }
+                count++;
+                if(count % Math.max(versionsPerTransaction, 1) == 0){
+                    conn.commit();
+                }
+            }
+            conn.commit();
+        } finally {
+            context.remove(TRANSACTION);
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void migrateAndCommit(Connection conn, Map<String, Object> context, Module module) throws Exception {
+        migrate(new JDBCVersionManager(conn), context, module);
+        // Liquibase disables auto-commit of the connection
+        commit(conn);
+    }
+
+    private static void commit(Connection conn) throws SQLException {
+        if(!conn.getAutoCommit()){
+            conn.commit();
+        }
+    }
+
+    protected Map<String, Object> createContext(Connection conn, ClassLoader classLoader, Database database) throws Exception {
+        database.setConnection(new JdbcConnection(conn));
+
+        Map<String, Object> context = new HashMap<>();
+        context.put(CONNECTION, conn);
+        context.put(CLASSLOADER, classLoader);
+        context.put(DATABASE, database);
+        context.put(BATCH_SIZE, batchSize);
+        context.put(CHANGELOG_CACHE, changeLogCache);
+        context.put(LISTENER, listener);
+        context.put(ONLINE_DDL, onlineDdl);
+        return context;
+    }
+
+    private Map<String, Object> createContext(DataSource dataSource, Connection conn, ClassLoader classLoader,
+                                              Supplier<Database> databaseFactory, Executor migrationExecutor) throws Exception {
+        Map<String, Object> context = createContext(conn, classLoader, databaseFactory.get());
+        context.put(DATA_SOURCE, dataSource);
+        context.put(DATABASE_FACTORY, databaseFactory);
+        context.put(MIGRATION_EXECUTOR, migrationExecutor);
+        return context;
     }
 
 }
@@ -0,0 +1,20 @@
+package io.github.gitbucket.solidbase;
+
+import java.sql.Connection;
+
+/**
+ * Provides a connection to the database or schema of each tenant.
+ *
+ * @see Solidbase#migrateTenants(java.util.Collection, TenantConnectionProvider, ClassLoader, java.util.function.Supplier, io.github.gitbucket.solidbase.model.Module, int)
+ */
+public interface TenantConnectionProvider {
+
+    /**
+     * Returns a new connection for the given tenant. The connection is closed by Solidbase after migration.
+     *
+     * @param tenantId the tenant id
+     * @return the connection
+     */
+    Connection getConnection(String tenantId) throws Exception;
+
+}
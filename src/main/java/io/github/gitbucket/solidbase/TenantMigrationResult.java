@@ -0,0 +1,45 @@
+package io.github.gitbucket.solidbase;
+
+/**
+ * The result of migration for a tenant.
+ */
+public class TenantMigrationResult {
+
+    private final String tenantId;
+    private final Exception failure;
+    private final long elapsedMillis;
+
+    public TenantMigrationResult(String tenantId, Exception failure, long elapsedMillis){
+        this.tenantId = tenantId;
+        this.failure = failure;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getTenantId(){
+        return this.tenantId;
+    }
+
+    public boolean isSuccess(){
+        return this.failure == null;
+    }
+
+    /**
+     * Returns the exception thrown by migration, or <code>null</code> if migration succeeded.
+     */
+    public Exception getFailure(){
+        return this.failure;
+    }
+
+    /**
+     * Returns the time taken to migrate the tenant in milliseconds.
+     */
+    public long getElapsedMillis(){
+        return this.elapsedMillis;
+    }
+
+    @Override
+    public String toString(){
+        return "TenantMigrationResult(" + tenantId + ", " + (isSuccess() ? "success" : failure) + ", " + elapsedMillis + "ms)";
+    }
+
+}
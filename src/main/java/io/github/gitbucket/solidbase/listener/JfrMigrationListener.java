@@ -0,0 +1,196 @@
+package io.github.gitbucket.solidbase.listener;
+
+import io.github.gitbucket.solidbase.migration.Migration;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * {@link MigrationListener} which emits migration events to Java Flight Recorder.
+ * <p>
+ * Events are recorded under the "Solidbase" category when a recording is running, for example by
+ * <code>-XX:StartFlightRecording</code>. This class requires a JVM which supports JFR events API (Java 11 or later).
+ * </p>
+ */
+public class JfrMigrationListener implements MigrationListener {
+
+    // Start events are pushed and popped by corresponding end events which are fired on the same thread
+    private final ThreadLocal<Deque<Event>> events = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Override
+    public void onModuleStart(String moduleId){
+        begin(new ModuleEvent());
+    }
+
+    @Override
+    public void onModuleEnd(String moduleId, long elapsedNanos, Throwable failure){
+        ModuleEvent event = (ModuleEvent) events.get().pop();
+        event.moduleId = moduleId;
+        event.failure = failure == null ? null : failure.toString();
+        commit(event);
+    }
+
+    @Override
+    public void onVersionStart(String moduleId, String version){
+        begin(new VersionEvent());
+    }
+
+    @Override
+    public void onVersionEnd(String moduleId, String version, long elapsedNanos, Throwable failure){
+        VersionEvent event = (VersionEvent) events.get().pop();
+        event.moduleId = moduleId;
+        event.version = version;
+        event.failure = failure == null ? null : failure.toString();
+        commit(event);
+    }
+
+    @Override
+    public void onMigrationStart(String moduleId, String version, Migration migration){
+        begin(new MigrationEvent());
+    }
+
+    @Override
+    public void onMigrationEnd(String moduleId, String version, Migration migration, long elapsedNanos, Throwable failure){
+        MigrationEvent event = (MigrationEvent) events.get().pop();
+        event.moduleId = moduleId;
+        event.version = version;
+        event.migration = migration.getClass().getName();
+        event.failure = failure == null ? null : failure.toString();
+        commit(event);
+    }
+
+    @Override
+    public void onStatementStart(String moduleId, String version, String sql){
+        begin(new StatementEvent());
+    }
+
+    @Override
+    public void onStatementEnd(String moduleId, String version, String sql, long elapsedNanos, int rowCount, Throwable failure){
+        StatementEvent event = (StatementEvent) events.get().pop();
+        // The duration must be fixed before checking the threshold
+        event.end();
+        if(event.shouldCommit()){
+            event.moduleId = moduleId;
+            event.version = version;
+            event.sql = sql;
+            event.rowCount = rowCount;
+            event.bytes = sql.getBytes(StandardCharsets.UTF_8).length;
+            event.failure = failure == null ? null : failure.toString();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onBatchEnd(String moduleId, String version, int statementCount, long elapsedNanos, int rowCount, Throwable failure){
+        BatchEvent event = new BatchEvent();
+        if(event.isEnabled()){
+            event.moduleId = moduleId;
+            event.version = version;
+            event.statementCount = statementCount;
+            event.rowCount = rowCount;
+            event.batchDuration = elapsedNanos;
+            event.failure = failure == null ? null : failure.toString();
+            event.commit();
+        }
+    }
+
+    private void begin(Event event){
+        event.begin();
+        events.get().push(event);
+    }
+
+    private static void commit(Event event){
+        event.end();
+        if(event.shouldCommit()){
+            event.commit();
+        }
+    }
+
+    @Name("solidbase.Module")
+    @Label("Module Migration")
+    @Category("Solidbase")
+    @StackTrace(false)
+    static class ModuleEvent extends Event {
+        @Label("Module")
+        String moduleId;
+        @Label("Failure")
+        String failure;
+    }
+
+    @Name("solidbase.Version")
+    @Label("Version Migration")
+    @Category("Solidbase")
+    @StackTrace(false)
+    static class VersionEvent extends Event {
+        @Label("Module")
+        String moduleId;
+        @Label("Version")
+        String version;
+        @Label("Failure")
+        String failure;
+    }
+
+    @Name("solidbase.Migration")
+    @Label("Migration")
+    @Category("Solidbase")
+    @StackTrace(false)
+    static class MigrationEvent extends Event {
+        @Label("Module")
+        String moduleId;
+        @Label("Version")
+        String version;
+        @Label("Migration Class")
+        String migration;
+        @Label("Failure")
+        String failure;
+    }
+
+    @Name("solidbase.Statement")
+    @Label("Statement")
+    @Category("Solidbase")
+    @StackTrace(false)
+    static class StatementEvent extends Event {
+        @Label("Module")
+        String moduleId;
+        @Label("Version")
+        String version;
+        @Label("SQL")
+        String sql;
+        @Label("Row Count")
+        int rowCount;
+        @Label("Size")
+        @DataAmount
+        int bytes;
+        @Label("Failure")
+        String failure;
+    }
+
+    @Name("solidbase.Batch")
+    @Label("Statement Batch")
+    @Category("Solidbase")
+    @StackTrace(false)
+    static class BatchEvent extends Event {
+        @Label("Module")
+        String moduleId;
+        @Label("Version")
+        String version;
+        @Label("Statement Count")
+        int statementCount;
+        @Label("Row Count")
+        int rowCount;
+        @Label("Batch Duration")
+        @Timespan
+        long batchDuration;
+        @Label("Failure")
+        String failure;
+    }
+
+}
@@ -0,0 +1,64 @@
+package io.github.gitbucket.solidbase.listener;
+
+import io.github.gitbucket.solidbase.migration.Migration;
+
+/**
+ * Receives events of migration.
+ * <p>
+ * Set an implementation to {@link io.github.gitbucket.solidbase.Solidbase#setListener(MigrationListener)}.
+ * All methods do nothing by default, so implement only methods you need.
+ * Methods may be called from multiple threads when modules or tenants are migrated concurrently.
+ * Durations are given in nanoseconds, and <code>failure</code> is <code>null</code> if the operation succeeded.
+ * </p>
+ * <p>
+ * Statement events are fired by {@link io.github.gitbucket.solidbase.migration.SqlMigration} and
+ * {@link io.github.gitbucket.solidbase.migration.LiquibaseMigration}. When batched execution is enabled,
+ * DML statements executed in a batch are reported by {@link #onBatchEnd} instead of statement events.
+ * </p>
+ */
+public interface MigrationListener {
+
+    default void onModuleStart(String moduleId){
+    }
+
+    default void onModuleEnd(String moduleId, long elapsedNanos, Throwable failure){
+    }
+
+    default void onVersionStart(String moduleId, String version){
+    }
+
+    default void onVersionEnd(String moduleId, String version, long elapsedNanos, Throwable failure){
+    }
+
+    default void onMigrationStart(String moduleId, String version, Migration migration){
+    }
+
+    default void onMigrationEnd(String moduleId, String version, Migration migration, long elapsedNanos, Throwable failure){
+    }
+
+    default void onStatementStart(String moduleId, String version, String sql){
+    }
+
+    /**
+     * @param rowCount the number of affected rows, or 0 if the statement doesn't return it
+     */
+    default void onStatementEnd(String moduleId, String version, String sql, long elapsedNanos, int rowCount, Throwable failure){
+    }
+
+    /**
+     * @param statementCount the number of statements in the batch
+     * @param rowCount the total number of affected rows
+     */
+    default void onBatchEnd(String moduleId, String version, int statementCount, long elapsedNanos, int rowCount, Throwable failure){
+    }
+
+    /**
+     * Called for each statement generated from a Liquibase changelog which can't be executed without blocking writes
+     * when online DDL is enabled by {@link io.github.gitbucket.solidbase.Solidbase#setOnlineDdl(boolean)}.
+     * It's called when SQL is generated, so statements read from {@link io.github.gitbucket.solidbase.migration.ChangeLogCache}
+     * are not reported again.
+     */
+    default void onBlockingStatement(String moduleId, String version, String sql){
+    }
+
+}
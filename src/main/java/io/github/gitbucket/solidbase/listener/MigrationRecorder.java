@@ -0,0 +1,205 @@
+package io.github.gitbucket.solidbase.listener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link MigrationListener} which records elapsed time of modules and versions and the slowest statements.
+ * <p>
+ * It's thread-safe and keeps only a fixed number of statements, so it can be enabled in production.
+ * Call {@link #getSummary()} after migration to see where the time was spent.
+ * </p>
+ */
+public class MigrationRecorder implements MigrationListener {
+
+    private static final Comparator<StatementRecord> ELAPSED_ORDER = Comparator.comparingLong(StatementRecord::getElapsedNanos);
+
+    private final int maxStatements;
+    private final PriorityQueue<StatementRecord> slowestStatements = new PriorityQueue<>(ELAPSED_ORDER);
+    private volatile long threshold = -1;
+
+    private final Map<String, Long> moduleNanos = new ConcurrentHashMap<>();
+    private final Map<String, Long> versionNanos = new ConcurrentHashMap<>();
+    private final LongAdder statementCount = new LongAdder();
+    private final LongAdder statementNanos = new LongAdder();
+    private final LongAdder rowCount = new LongAdder();
+
+    /**
+     * Creates <code>MigrationRecorder</code> which keeps the slowest 10 statements.
+     */
+    public MigrationRecorder(){
+        this(10);
+    }
+
+    /**
+     * @param maxStatements the number of the slowest statements to keep, which must be positive
+     */
+    public MigrationRecorder(int maxStatements){
+        if(maxStatements < 1){
+            throw new IllegalArgumentException("The number of statements must be positive: " + maxStatements);
+        }
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    public void onModuleEnd(String moduleId, long elapsedNanos, Throwable failure){
+        moduleNanos.merge(moduleId, elapsedNanos, Long::sum);
+    }
+
+    @Override
+    public void onVersionEnd(String moduleId, String version, long elapsedNanos, Throwable failure){
+        versionNanos.merge(moduleId + ":" + version, elapsedNanos, Long::sum);
+    }
+
+    @Override
+    public void onStatementEnd(String moduleId, String version, String sql, long elapsedNanos, int rowCount, Throwable failure){
+        this.statementCount.increment();
+        this.statementNanos.add(elapsedNanos);
+        this.rowCount.add(rowCount);
+        // Avoid locking for statements which are faster than all kept statements
+        if(elapsedNanos > threshold){
+            synchronized (slowestStatements) {
+                slowestStatements.add(new StatementRecord(moduleId, version, sql, elapsedNanos, rowCount));
+                if(slowestStatements.size() > maxStatements){
+                    slowestStatements.poll();
+                }
+                if(slowestStatements.size() >= maxStatements){
+                    threshold = slowestStatements.peek().getElapsedNanos();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onBatchEnd(String moduleId, String version, int statementCount, long elapsedNanos, int rowCount, Throwable failure){
+        this.statementCount.add(statementCount);
+        this.statementNanos.add(elapsedNanos);
+        this.rowCount.add(rowCount);
+    }
+
+    /**
+     * Returns the slowest statements in descending order of elapsed time.
+     */
+    public List<StatementRecord> getSlowestStatements(){
+        List<StatementRecord> result;
+        synchronized (slowestStatements) {
+            result = new ArrayList<>(slowestStatements);
+        }
+        result.sort(ELAPSED_ORDER.reversed());
+        return result;
+    }
+
+    /**
+     * Returns elapsed time of each module in nanoseconds.
+     */
+    public Map<String, Long> getModuleNanos(){
+        return this.moduleNanos;
+    }
+
+    /**
+     * Returns elapsed time of each version in nanoseconds. Keys are <code>moduleId:version</code>.
+     */
+    public Map<String, Long> getVersionNanos(){
+        return this.versionNanos;
+    }
+
+    public long getStatementCount(){
+        return this.statementCount.sum();
+    }
+
+    public long getStatementNanos(){
+        return this.statementNanos.sum();
+    }
+
+    public long getRowCount(){
+        return this.rowCount.sum();
+    }
+
+    /**
+     * Returns a human readable summary of recorded events.
+     */
+    public String getSummary(){
+        StringBuilder sb = new StringBuilder();
+        sb.append("Statements: ").append(getStatementCount())
+          .append(", ").append(toMillis(getStatementNanos())).append("ms")
+          .append(", ").append(getRowCount()).append(" rows\n");
+        for(Map.Entry<String, Long> entry: moduleNanos.entrySet()){
+            sb.append("Module ").append(entry.getKey()).append(": ").append(toMillis(entry.getValue())).append("ms\n");
+        }
+        for(Map.Entry<String, Long> entry: versionNanos.entrySet()){
+            sb.append("Version ").append(entry.getKey()).append(": ").append(toMillis(entry.getValue())).append("ms\n");
+        }
+        for(StatementRecord record: getSlowestStatements()){
+            sb.append(record).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static long toMillis(long nanos){
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * A recorded statement.
+     */
+    public static class StatementRecord {
+
+        private static final int MAX_SQL_LENGTH = 200;
+
+        private final String moduleId;
+        private final String version;
+        private final String sql;
+        private final long elapsedNanos;
+        private final int rowCount;
+
+        public StatementRecord(String moduleId, String version, String sql, long elapsedNanos, int rowCount){
+            this.moduleId = moduleId;
+            this.version = version;
+            this.sql = sql;
+            this.elapsedNanos = elapsedNanos;
+            this.rowCount = rowCount;
+        }
+
+        public String getModuleId(){
+            return this.moduleId;
+        }
+
+        public String getVersion(){
+            return this.version;
+        }
+
+        public String getSql(){
+            return this.sql;
+        }
+
+        public long getElapsedNanos(){
+            return this.elapsedNanos;
+        }
+
+        public int getRowCount(){
+            return this.rowCount;
+        }
+
+        /**
+         * Returns the size of the statement in UTF-8 bytes.
+         */
+        public int getBytes(){
+            return sql.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public String toString(){
+            String text = sql.length() > MAX_SQL_LENGTH ? sql.substring(0, MAX_SQL_LENGTH) + "..." : sql;
+            return moduleId + ":" + version + " " + toMillis(elapsedNanos) + "ms, " + rowCount + " rows, "
+                    + getBytes() + " bytes: " + text;
+        }
+    }
+
+}
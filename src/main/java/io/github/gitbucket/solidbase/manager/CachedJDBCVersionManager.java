@@ -0,0 +1,109 @@
+package io.github.gitbucket.solidbase.manager;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link JDBCVersionManager} which loads all versions by a single query at initialization, or at the first lookup
+ * if the VERSIONS table already exists, and answers {@link #getCurrentVersion(String)} from memory.
+ * <p>
+ * It's suitable to migrate many modules on the same connection. Fingerprints of modules are also loaded by a single query
+ * if checksums are enabled.
+ * The snapshot is not refreshed, so other processes must not update the VERSIONS table at the same time.
+ * </p>
+ */
+public class CachedJDBCVersionManager extends JDBCVersionManager {
+
+    private Map<String, String> versions;
+    private Map<String, String> fingerprints;
+
+    public CachedJDBCVersionManager(Connection conn){
+        super(conn);
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        if(versions == null){
+            super.initialize();
+            getVersions();
+        }
+    }
+
+    @Override
+    public void refresh() throws Exception {
+        versions = null;
+        fingerprints = null;
+    }
+
+    @Override
+    public void updateVersion(String moduleId, String version) throws Exception {
+        Map<String, String> versions = getVersions();
+        if(versions.containsKey(moduleId)){
+            updateDatabase(conn, "UPDATE VERSIONS SET VERSION = ? WHERE MODULE_ID = ?", version, moduleId);
+        } else {
+            updateDatabase(conn, "INSERT INTO VERSIONS (MODULE_ID, VERSION) VALUES (?, ?)", moduleId, version);
+        }
+        versions.put(moduleId, version);
+    }
+
+    @Override
+    public String getCurrentVersion(String moduleId) throws Exception {
+        return getVersions().get(moduleId);
+    }
+
+    @Override
+    public void initializeChecksums() throws Exception {
+        if(fingerprints == null){
+            super.initializeChecksums();
+            getFingerprints();
+        }
+    }
+
+    @Override
+    public String getFingerprint(String moduleId) throws Exception {
+        return getFingerprints().get(moduleId);
+    }
+
+    @Override
+    public void updateFingerprint(String moduleId, String fingerprint) throws Exception {
+        super.updateFingerprint(moduleId, fingerprint);
+        getFingerprints().put(moduleId, fingerprint);
+    }
+
+    /**
+     * Returns the snapshot of versions, loading it if it's not loaded yet.
+     */
+    private Map<String, String> getVersions() throws Exception {
+        if(versions == null){
+            versions = selectMap("SELECT MODULE_ID, VERSION FROM VERSIONS");
+        }
+        return versions;
+    }
+
+    /**
+     * Returns the snapshot of fingerprints, loading it if it's not loaded yet.
+     */
+    private Map<String, String> getFingerprints() throws Exception {
+        if(fingerprints == null){
+            fingerprints = selectMap("SELECT MODULE_ID, CHECKSUM FROM VERSIONS WHERE CHECKSUM IS NOT NULL");
+        }
+        return fingerprints;
+    }
+
+    private Map<String, String> selectMap(String sql) throws Exception {
+        Map<String, String> map = new ConcurrentHashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while(rs.next()){
+                map.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        return map;
+    }
+
+}
@@ -0,0 +1,264 @@
+package io.github.gitbucket.solidbase.manager;
+
+import io.github.gitbucket.solidbase.migration.MigrationUtils;
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTimeoutException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Provides named locks shared by processes connected to the same database.
+ * <p>
+ * Database native advisory locks are used if available: <code>pg_advisory_lock</code> of PostgreSQL and
+ * <code>GET_LOCK</code> of MySQL and MariaDB. Waiting processes are blocked in the database until the lock is released,
+ * and locks are released automatically when the connection is closed.
+ * </p>
+ * <p>
+ * On other databases, a row of the SOLIDBASE_LOCK table is used as a lock, and waiting processes retry with exponential backoff.
+ * If a process crashes while holding the lock, the row is regarded as stale and taken over after the expiration time
+ * since it was locked. Therefore, the expiration time must be longer than the longest migration, and clocks of processes
+ * must be synchronized.
+ * </p>
+ */
+public class JDBCLockManager {
+
+    private static final long MIN_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+    private static final long DEFAULT_EXPIRATION_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Connection conn;
+    private final long expirationMillis;
+    /**
+     * LOCKED_AT of rows of the SOLIDBASE_LOCK table held by this manager.
+     */
+    private final Map<String, Long> lockedAt = new HashMap<>();
+
+    public JDBCLockManager(Connection conn){
+        this(conn, DEFAULT_EXPIRATION_MILLIS);
+    }
+
+    /**
+     * @param conn the connection
+     * @param expirationMillis the time in milliseconds after which locks of the SOLIDBASE_LOCK table are regarded as stale
+     */
+    public JDBCLockManager(Connection conn, long expirationMillis){
+        this.conn = conn;
+        this.expirationMillis = expirationMillis;
+    }
+
+    /**
+     * Acquires the lock of the given name, waiting until it's released by other processes.
+     *
+     * @param name the lock name
+     * @param timeoutMillis the maximum time to wait in milliseconds
+     * @throws TimeoutException if the lock is not acquired within the timeout
+     */
+    public void lock(String name, long timeoutMillis) throws Exception {
+        switch(getDatabaseType()){
+            case "postgresql":
+                lockPostgreSQL(name, timeoutMillis);
+                break;
+            case "mysql":
+                lockMySQL(name, timeoutMillis);
+                break;
+            default:
+                lockTable(name, timeoutMillis);
+        }
+    }
+
+    /**
+     * Releases the lock of the given name.
+     *
+     * @param name the lock name
+     */
+    public void unlock(String name) throws Exception {
+        switch(getDatabaseType()){
+            case "postgresql":
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                    stmt.setLong(1, toLockKey(name));
+                    stmt.executeQuery().close();
+                }
+                break;
+            case "mysql":
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                    stmt.setString(1, toLockName(name));
+                    stmt.executeQuery().close();
+                }
+                break;
+            default:
+                Long time = lockedAt.remove(name);
+                if(time == null){
+                    inAutoCommit(() -> updateDatabase(conn, "DELETE FROM SOLIDBASE_LOCK WHERE LOCK_NAME = ?", name));
+                } else {
+                    // Don't release the lock taken over by another process after it expired
+                    inAutoCommit(() -> updateDatabase(conn, "DELETE FROM SOLIDBASE_LOCK WHERE LOCK_NAME = ? AND LOCKED_AT = ?", name, time));
+                }
+        }
+    }
+
+    /**
+     * Returns whether {@link #unlock(String)} commits the transaction of the connection, which is the case
+     * for databases which use the SOLIDBASE_LOCK table.
+     */
+    public boolean isCommittedOnUnlock() throws SQLException {
+        switch(getDatabaseType()){
+            case "postgresql":
+            case "mysql":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private void lockPostgreSQL(String name, long timeoutMillis) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT pg_advisory_lock(?)")) {
+            stmt.setLong(1, toLockKey(name));
+            stmt.setQueryTimeout(toSeconds(timeoutMillis));
+            stmt.executeQuery().close();
+        } catch(SQLTimeoutException ex){
+            throw timeout(name, timeoutMillis);
+        } catch(SQLException ex){
+            // PostgreSQL reports a cancelled query as query_canceled
+            if("57014".equals(ex.getSQLState())){
+                throw timeout(name, timeoutMillis);
+            }
+            throw ex;
+        }
+    }
+
+    private void lockMySQL(String name, long timeoutMillis) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, toLockName(name));
+            stmt.setInt(2, toSeconds(timeoutMillis));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if(!rs.next() || rs.getInt(1) != 1){
+                    throw timeout(name, timeoutMillis);
+                }
+            }
+        }
+    }
+
+    private void lockTable(String name, long timeoutMillis) throws Exception {
+        if(!JDBCVersionManager.checkTableExist(conn, "SOLIDBASE_LOCK")){
+            try {
+                inAutoCommit(() -> updateDatabase(conn,
+                        "CREATE TABLE SOLIDBASE_LOCK (LOCK_NAME VARCHAR(100) NOT NULL PRIMARY KEY, LOCKED_AT BIGINT NOT NULL)"));
+            } catch(SQLException ex){
+                // Another process might have created it at the same time
+                if(!JDBCVersionManager.checkTableExist(conn, "SOLIDBASE_LOCK")){
+                    throw ex;
+                }
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long backoff = MIN_BACKOFF_MILLIS;
+        while(true){
+            long time = System.currentTimeMillis();
+            try {
+                inAutoCommit(() -> {
+                    try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO SOLIDBASE_LOCK (LOCK_NAME, LOCKED_AT) VALUES (?, ?)")) {
+                        stmt.setString(1, name);
+                        stmt.setLong(2, time);
+                        stmt.executeUpdate();
+                    }
+                });
+                lockedAt.put(name, time);
+                return;
+            } catch(SQLException ex){
+                // Other errors such as a lost connection are not retried
+                if(!isConstraintViolation(ex)){
+                    throw ex;
+                }
+            }
+            // The lock is held by another process, which might have crashed
+            int[] expired = new int[1];
+            inAutoCommit(() -> expired[0] = updateDatabase(conn,
+                    "DELETE FROM SOLIDBASE_LOCK WHERE LOCK_NAME = ? AND LOCKED_AT < ?", name, time - expirationMillis));
+            if(expired[0] > 0){
+                continue;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if(remaining <= 0){
+                throw timeout(name, timeoutMillis);
+            }
+            Thread.sleep(Math.min(remaining, backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1)));
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Checks whether the insertion failed because the row of the lock exists.
+     */
+    private boolean isConstraintViolation(SQLException ex) throws SQLException {
+        if(ex instanceof SQLIntegrityConstraintViolationException){
+            return true;
+        }
+        String sqlState = ex.getSQLState();
+        if(sqlState != null){
+            return sqlState.startsWith("23");
+        }
+        // SQLite doesn't report SQLState, but SQLITE_CONSTRAINT and its extended result codes
+        return getDatabaseType().equals("sqlite") && (ex.getErrorCode() & 0xff) == 19;
+    }
+
+    /**
+     * Executes the given operation in auto-commit mode so that other processes can see the lock immediately.
+     */
+    private void inAutoCommit(ThrowableRunnable f) throws Exception {
+        boolean autoCommit = conn.getAutoCommit();
+        if(!autoCommit){
+            conn.setAutoCommit(true);
+        }
+        try {
+            f.run();
+        } finally {
+            if(!autoCommit){
+                conn.setAutoCommit(false);
+            }
+        }
+    }
+
+    private String getDatabaseType() throws SQLException {
+        String productName = conn.getMetaData().getDatabaseProductName().toLowerCase(Locale.ENGLISH);
+        if(productName.contains("postgresql")){
+            return "postgresql";
+        } else if(productName.contains("mysql") || productName.contains("mariadb")){
+            return "mysql";
+        }
+        return productName;
+    }
+
+    private static TimeoutException timeout(String name, long timeoutMillis){
+        return new TimeoutException("Failed to acquire lock " + name + " within " + timeoutMillis + "ms");
+    }
+
+    private static int toSeconds(long millis){
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (millis + 999) / 1000));
+    }
+
+    /**
+     * Converts the lock name to the key of an advisory lock of PostgreSQL.
+     */
+    private static long toLockKey(String name){
+        return Long.parseUnsignedLong(MigrationUtils.digest(name).substring(0, 16), 16);
+    }
+
+    /**
+     * Converts the lock name to the lock name of MySQL which is limited to 64 characters.
+     */
+    private static String toLockName(String name){
+        return name.length() <= 64 ? name : MigrationUtils.digest(name);
+    }
+
+}
@@ -0,0 +1,80 @@
+package io.github.gitbucket.solidbase.manager;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Records progress of long running migrations such as {@link io.github.gitbucket.solidbase.migration.ChunkedMigration}
+ * in the MIGRATION_PROGRESS table, which is managed alongside the VERSIONS table of {@link JDBCVersionManager}.
+ * <p>
+ * Progress is recorded as the next key to be processed for each table and checksum of the migration in a version
+ * of a module, so interrupted migration can be resumed from there.
+ * </p>
+ */
+public class JDBCProgressManager {
+
+    private final Connection conn;
+
+    public JDBCProgressManager(Connection conn){
+        this.conn = conn;
+    }
+
+    public void initialize() throws Exception {
+        if(!JDBCVersionManager.checkTableExist(conn, "MIGRATION_PROGRESS")){
+            updateDatabase(conn, "CREATE TABLE MIGRATION_PROGRESS (MODULE_ID VARCHAR(100) NOT NULL, VERSION VARCHAR(100) NOT NULL, " +
+                    "TABLE_NAME VARCHAR(100) NOT NULL, CHECKSUM VARCHAR(64) NOT NULL, NEXT_KEY BIGINT NOT NULL, " +
+                    "PRIMARY KEY (MODULE_ID, VERSION, TABLE_NAME, CHECKSUM))");
+        }
+    }
+
+    /**
+     * Returns the next key to be processed, or <code>null</code> if no progress is recorded.
+     */
+    public Long getNextKey(String moduleId, String version, String tableName, String checksum) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT NEXT_KEY FROM MIGRATION_PROGRESS WHERE MODULE_ID = ? AND VERSION = ? AND TABLE_NAME = ? AND CHECKSUM = ?")) {
+            stmt.setString(1, moduleId);
+            stmt.setString(2, version);
+            stmt.setString(3, tableName);
+            stmt.setString(4, checksum);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    public void updateNextKey(String moduleId, String version, String tableName, String checksum, long nextKey) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE MIGRATION_PROGRESS SET NEXT_KEY = ? WHERE MODULE_ID = ? AND VERSION = ? AND TABLE_NAME = ? AND CHECKSUM = ?")) {
+            stmt.setLong(1, nextKey);
+            stmt.setString(2, moduleId);
+            stmt.setString(3, version);
+            stmt.setString(4, tableName);
+            stmt.setString(5, checksum);
+            if(stmt.executeUpdate() > 0){
+                return;
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO MIGRATION_PROGRESS (MODULE_ID, VERSION, TABLE_NAME, CHECKSUM, NEXT_KEY) VALUES (?, ?, ?, ?, ?)")) {
+            stmt.setString(1, moduleId);
+            stmt.setString(2, version);
+            stmt.setString(3, tableName);
+            stmt.setString(4, checksum);
+            stmt.setLong(5, nextKey);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Removes the progress when the migration has been completed.
+     */
+    public void remove(String moduleId, String version, String tableName, String checksum) throws Exception {
+        updateDatabase(conn, "DELETE FROM MIGRATION_PROGRESS WHERE MODULE_ID = ? AND VERSION = ? AND TABLE_NAME = ? AND CHECKSUM = ?",
+                moduleId, version, tableName, checksum);
+    }
+
+}
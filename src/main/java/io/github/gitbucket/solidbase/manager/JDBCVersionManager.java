@@ -4,14 +4,19 @@ import io.github.gitbucket.solidbase.migration.MigrationUtils;
 import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Created by takezoe on 15/11/23.
  */
 public class JDBCVersionManager implements VersionManager {
 
-    private final Connection conn;
+    protected final Connection conn;
 
     public JDBCVersionManager(Connection conn){
         this.conn = conn;
@@ -37,21 +42,126 @@ public class JDBCVersionManager implements VersionManager {
         return selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID = ?", moduleId);
     }
 
+    @Override
+    public boolean isInitialized() throws Exception {
+        return checkTableExist();
+    }
+
+    @Override
+    public boolean isChecksumsInitialized() throws Exception {
+        return checkColumnExist("VERSIONS", "CHECKSUM") && checkTableExist("VERSION_CHECKSUMS");
+    }
+
+    /**
+     * Adds the CHECKSUM column to the VERSIONS table and creates the VERSION_CHECKSUMS table if they don't exist.
+     */
+    @Override
+    public void initializeChecksums() throws Exception {
+        if(!checkColumnExist("VERSIONS", "CHECKSUM")){
+            updateDatabase(conn, "ALTER TABLE VERSIONS ADD COLUMN CHECKSUM VARCHAR(64)");
+        }
+        if(!checkTableExist("VERSION_CHECKSUMS")){
+            updateDatabase(conn, "CREATE TABLE VERSION_CHECKSUMS (MODULE_ID VARCHAR(100) NOT NULL, VERSION VARCHAR(100) NOT NULL, " +
+                    "CHECKSUM VARCHAR(64) NOT NULL, PRIMARY KEY (MODULE_ID, VERSION))");
+        }
+    }
+
+    @Override
+    public String getFingerprint(String moduleId) throws Exception {
+        return selectStringFromDatabase(conn, "SELECT CHECKSUM FROM VERSIONS WHERE MODULE_ID = ?", moduleId);
+    }
+
+    @Override
+    public void updateFingerprint(String moduleId, String fingerprint) throws Exception {
+        updateDatabase(conn, "UPDATE VERSIONS SET CHECKSUM = ? WHERE MODULE_ID = ?", fingerprint, moduleId);
+    }
+
+    @Override
+    public Map<String, String> getChecksums(String moduleId) throws Exception {
+        Map<String, String> checksums = new LinkedHashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT VERSION, CHECKSUM FROM VERSION_CHECKSUMS WHERE MODULE_ID = ?")) {
+            stmt.setString(1, moduleId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while(rs.next()){
+                    checksums.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        return checksums;
+    }
+
+    @Override
+    public void updateChecksum(String moduleId, String version, String checksum) throws Exception {
+        if(updateDatabase(conn, "UPDATE VERSION_CHECKSUMS SET CHECKSUM = ? WHERE MODULE_ID = ? AND VERSION = ?", checksum, moduleId, version) == 0){
+            updateDatabase(conn, "INSERT INTO VERSION_CHECKSUMS (MODULE_ID, VERSION, CHECKSUM) VALUES (?, ?, ?)", moduleId, version, checksum);
+        }
+    }
+
     protected boolean checkTableExist(){
+        return checkTableExist("VERSIONS");
+    }
+
+    protected boolean checkTableExist(String tableName){
+        return checkTableExist(conn, tableName);
+    }
+
+    static boolean checkTableExist(Connection conn, String tableName){
+        // Tables in other schemas such as those of other tenants must not be found
+        String catalog = getCatalog(conn);
+        String schema = getSchema(conn);
         try {
-            ResultSet rs = conn.getMetaData().getTables(null, null, "%", new String[]{ "TABLE" });
-            try {
-                while(rs.next()){
-                    String tableName = rs.getString("TABLE_NAME");
-                    if(tableName.toUpperCase().equals("VERSIONS")){
+            // Look up the table name directly in the case which the database stores it in without scanning all tables
+            DatabaseMetaData metaData = conn.getMetaData();
+            for(String name: new String[]{ tableName.toUpperCase(Locale.ROOT), tableName.toLowerCase(Locale.ROOT) }){
+                try (ResultSet rs = metaData.getTables(catalog, schema, name, new String[]{ "TABLE" })) {
+                    if(rs.next()){
                         return true;
                     }
                 }
-            } finally {
-                rs.close();
             }
         } catch(Exception ex){ /* ignore */ }
         return false;
     }
 
+    protected boolean checkColumnExist(String tableName, String columnName){
+        String catalog = getCatalog(conn);
+        String schema = getSchema(conn);
+        try {
+            DatabaseMetaData metaData = conn.getMetaData();
+            for(String table: new String[]{ tableName.toUpperCase(Locale.ROOT), tableName.toLowerCase(Locale.ROOT) }){
+                try (ResultSet rs = metaData.getColumns(catalog, schema, table, "%")) {
+                    while(rs.next()){
+                        if(rs.getString("COLUMN_NAME").equalsIgnoreCase(columnName)){
+                            return true;
+                        }
+                    }
+                }
+            }
+        } catch(Exception ex){ /* ignore */ }
+        return false;
+    }
+
+    /**
+     * Returns the current catalog of the connection, or <code>null</code> to search all catalogs if it's unknown.
+     */
+    private static String getCatalog(Connection conn){
+        try {
+            return conn.getCatalog();
+        } catch(Exception ex){
+            return null;
+        }
+    }
+
+    /**
+     * Returns the current schema of the connection, or <code>null</code> to search all schemas if it's unknown.
+     * <code>Connection.getSchema()</code> is not implemented by some old drivers.
+     */
+    private static String getSchema(Connection conn){
+        try {
+            return conn.getSchema();
+        } catch(Exception | AbstractMethodError ex){
+            return null;
+        }
+    }
+
 }
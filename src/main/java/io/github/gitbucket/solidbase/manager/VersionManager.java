@@ -1,5 +1,8 @@
 package io.github.gitbucket.solidbase.manager;
 
+import java.util.Collections;
+import java.util.Map;
+
 public interface VersionManager {
 
     void initialize() throws Exception;
@@ -8,4 +11,55 @@ public interface VersionManager {
 
     String getCurrentVersion(String moduleId) throws Exception;
 
+    /**
+     * Returns whether the storage of versions has been initialized, without initializing it.
+     */
+    default boolean isInitialized() throws Exception {
+        return true;
+    }
+
+    /**
+     * Discards versions cached in memory, so they are read from the storage again.
+     * It's called after acquiring the migration lock because other processes might have migrated modules.
+     */
+    default void refresh() throws Exception {
+    }
+
+    /**
+     * Returns whether the storage of checksums has been initialized, without initializing it.
+     */
+    default boolean isChecksumsInitialized() throws Exception {
+        return true;
+    }
+
+    /**
+     * Prepares the storage of checksums. It's called only if checksums are enabled.
+     */
+    default void initializeChecksums() throws Exception {
+    }
+
+    /**
+     * Returns the fingerprint of the module definition recorded when the module was migrated to the latest version,
+     * or <code>null</code> if it's not recorded.
+     */
+    default String getFingerprint(String moduleId) throws Exception {
+        return null;
+    }
+
+    default void updateFingerprint(String moduleId, String fingerprint) throws Exception {
+    }
+
+    /**
+     * Returns checksums of applied versions of the module recorded when they were applied.
+     *
+     * @param moduleId the module id
+     * @return the map of versions and checksums
+     */
+    default Map<String, String> getChecksums(String moduleId) throws Exception {
+        return Collections.emptyMap();
+    }
+
+    default void updateChecksum(String moduleId, String version, String checksum) throws Exception {
+    }
+
 }
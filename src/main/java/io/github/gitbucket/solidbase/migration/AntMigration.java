@@ -1,16 +1,22 @@
 package io.github.gitbucket.solidbase.migration;
 
 import io.github.gitbucket.solidbase.Solidbase;
-import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.ProjectHelper;
 
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.FileNotFoundException;
+import java.net.URL;
 import java.util.Map;
 
-public class AntMigration implements Migration {
+/**
+ * Provides migration by Ant build file on the classpath.
+ * <p>
+ * The build file is parsed directly from the classpath without copying it to a temporary file,
+ * and the default target is executed. Unless the <code>basedir</code> property is given, relative paths are resolved
+ * against the temporary directory where the build file was copied in earlier versions.
+ * </p>
+ */
+public class AntMigration implements ChecksumMigration {
 
     private final String path;
 
@@ -24,30 +30,44 @@ public class AntMigration implements Migration {
 
     @Override
     public void migrate(String moduleId, String version, Map<String, Object> context) throws Exception {
-        String path = this.path;
-        if(path == null){
-            path = moduleId + "_" + version + ".xml";
+        String path = resolvePath(moduleId, version);
+        ClassLoader classLoader = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        URL url = MigrationResourceIndex.getResource(classLoader, path);
+        if(url == null){
+            throw new FileNotFoundException(path);
         }
 
-        Path tempFilePath = Files.createTempFile("solidbase_ant-", ".xml");
+        // Project is not reused because properties of Ant are immutable once set
+        Project project = new Project();
+        project.setProperty("ant.file", path);
+        project.init();
+        // Build files in jars don't have a parent directory to be the base directory
+        if(project.getProperty("basedir") == null){
+            project.setBasedir(System.getProperty("java.io.tmpdir"));
+        }
+        ProjectHelper helper = ProjectHelper.getProjectHelper();
+        project.addReference("ant.projectHelper", helper);
+        helper.parse(project, url);
+        project.executeTarget(project.getDefaultTarget());
+    }
 
-        try {
-            ClassLoader classLoader = (ClassLoader) context.get(Solidbase.CLASSLOADER);
-            String source = MigrationUtils.readResourceAsString(classLoader, path);
-            Files.write(tempFilePath, source.getBytes(StandardCharsets.UTF_8));
+    @Override
+    public String checksum(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader classLoader = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        return MigrationUtils.digestResource(classLoader, resolvePath(moduleId, version));
+    }
 
-            Project project = new Project();
-            project.setProperty("ant.file", path);
-            project.init();
-            ProjectHelper helper = ProjectHelper.getProjectHelper();
-            project.addReference("ant.projectHelper", helper);
-            helper.parse(project, tempFilePath.toFile());
-            System.out.println(project.getDefaultTarget());
-            project.executeTarget(project.getDefaultTarget());
+    @Override
+    public String fingerprint(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader classLoader = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        return MigrationUtils.fingerprintResource(classLoader, resolvePath(moduleId, version));
+    }
 
-        } finally {
-            ignoreException(() -> Files.delete(tempFilePath));
+    private String resolvePath(String moduleId, String version){
+        if(this.path == null){
+            return moduleId + "_" + version + ".xml";
         }
+        return this.path;
     }
 
 }
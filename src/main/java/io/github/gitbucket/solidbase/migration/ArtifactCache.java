@@ -0,0 +1,190 @@
+package io.github.gitbucket.solidbase.migration;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores artifacts of migration such as preprocessed changelogs and generated SQL in a directory
+ * to be reused across JVM restarts.
+ * <p>
+ * Each artifact is stored in a file named by the digest of its key, and read by memory mapping.
+ * Keys should contain content hashes of resources the artifact was made from, such as {@link MigrationUtils#fingerprintResource(ClassLoader, String)},
+ * so that stale artifacts are never returned. When the total size exceeds the limit, the least recently used artifacts are removed.
+ * The last modified time of files records their last use, so the order is kept across restarts.
+ * </p>
+ * <p>
+ * The same directory can be shared by multiple processes. Files are replaced atomically.
+ * </p>
+ */
+public class ArtifactCache {
+
+    private static final String SUFFIX = ".bin";
+
+    private final Path directory;
+    private final long maxSize;
+    // file names in the order of access
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize = 0;
+    private boolean loaded = false;
+
+    /**
+     * Creates <code>ArtifactCache</code> without a size limit.
+     *
+     * @param directory the cache directory. It's created if it doesn't exist.
+     */
+    public ArtifactCache(Path directory){
+        this(directory, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates <code>ArtifactCache</code> which removes the least recently used artifacts when the total size exceeds the limit.
+     *
+     * @param directory the cache directory. It's created if it doesn't exist.
+     * @param maxSize the maximum total size of artifacts in bytes
+     */
+    public ArtifactCache(Path directory, long maxSize){
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public Path getDirectory(){
+        return directory;
+    }
+
+    /**
+     * Returns the total size of artifacts in bytes which are known to this instance.
+     */
+    public synchronized long getSize() throws IOException {
+        load();
+        return totalSize;
+    }
+
+    /**
+     * Returns the artifact as a read-only buffer mapped to the file, or <code>null</code> if it's not cached.
+     */
+    public ByteBuffer get(String key) throws IOException {
+        String fileName = toFileName(key);
+        Path file = directory.resolve(fileName);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch(NoSuchFileException ex){
+            synchronized (this) {
+                Long size = entries.remove(fileName);
+                if(size != null){
+                    totalSize -= size;
+                }
+            }
+            return null;
+        }
+
+        synchronized (this) {
+            load();
+            // might have been written by other processes
+            if(entries.get(fileName) == null){
+                entries.put(fileName, (long) buffer.capacity());
+                totalSize += buffer.capacity();
+            }
+        }
+        ignoreException(() -> Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis())));
+        return buffer;
+    }
+
+    /**
+     * Stores the artifact, and removes the least recently used artifacts if the total size exceeds the limit.
+     */
+    public void put(String key, byte[] data) throws IOException {
+        String fileName = toFileName(key);
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, "solidbase-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                out.write(data);
+            }
+            Files.move(tempFile, directory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            ignoreException(() -> Files.deleteIfExists(tempFile));
+        }
+
+        synchronized (this) {
+            load();
+            Long oldSize = entries.put(fileName, (long) data.length);
+            totalSize += data.length - (oldSize == null ? 0 : oldSize);
+            evict(fileName);
+        }
+    }
+
+    /**
+     * Removes artifacts from the least recently used one until the total size fits the limit.
+     * The given artifact which has been just stored is never removed.
+     */
+    private void evict(String fileName){
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while(totalSize > maxSize && iterator.hasNext()){
+            Map.Entry<String, Long> entry = iterator.next();
+            if(entry.getKey().equals(fileName)){
+                continue;
+            }
+            ignoreException(() -> Files.deleteIfExists(directory.resolve(entry.getKey())));
+            totalSize -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Loads existing files in the order of their last use.
+     */
+    private void load() throws IOException {
+        if(loaded){
+            return;
+        }
+        loaded = true;
+        if(!Files.isDirectory(directory)){
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        Map<Path, FileTime> lastModified = new LinkedHashMap<>();
+        for(Path file: files){
+            try {
+                lastModified.put(file, Files.getLastModifiedTime(file));
+            } catch(NoSuchFileException ex){
+                // removed by other processes
+            }
+        }
+        files = new ArrayList<>(lastModified.keySet());
+        files.sort((file1, file2) -> lastModified.get(file1).compareTo(lastModified.get(file2)));
+        for(Path file: files){
+            try {
+                long size = Files.size(file);
+                entries.put(file.getFileName().toString(), size);
+                totalSize += size;
+            } catch(NoSuchFileException ex){
+                // removed by other processes
+            }
+        }
+    }
+
+    private static String toFileName(String key){
+        return digest(key) + SUFFIX;
+    }
+
+}
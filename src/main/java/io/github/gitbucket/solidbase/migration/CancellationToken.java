@@ -0,0 +1,74 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Requests cooperative cancellation of a running migration.
+ * <p>
+ * Migrations check the token between statements by {@link #throwIfCancelled()}, and register JDBC statements while
+ * they are executed so that {@link #cancel()} can abort them by {@link Statement#cancel()}.
+ * {@link StatementExecutor} does both, so {@link SqlMigration} and {@link LiquibaseMigration} are cancellable.
+ * </p>
+ * <p>
+ * The token is passed to migrations in the context as {@link Solidbase#CANCELLATION_TOKEN}.
+ * It doesn't block threads by monitors, so it can be used from virtual threads.
+ * </p>
+ */
+public class CancellationToken {
+
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    /**
+     * Returns the token in the given migration context, or <code>null</code> if the migration isn't cancellable.
+     */
+    public static CancellationToken fromContext(Map<String, Object> context){
+        return (CancellationToken) context.get(Solidbase.CANCELLATION_TOKEN);
+    }
+
+    /**
+     * Requests cancellation, and cancels JDBC statements which are being executed.
+     */
+    public void cancel(){
+        cancelled = true;
+        for(Statement stmt: statements){
+            ignoreException(stmt::cancel);
+        }
+    }
+
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if cancellation has been requested
+     */
+    public void throwIfCancelled(){
+        if(cancelled){
+            throw new CancellationException("Migration was cancelled");
+        }
+    }
+
+    /**
+     * Registers the statement which is about to be executed. It's cancelled immediately if cancellation has been requested.
+     * Call {@link #unregister(Statement)} after it finishes.
+     */
+    public void register(Statement stmt){
+        statements.add(stmt);
+        if(cancelled){
+            ignoreException(stmt::cancel);
+        }
+    }
+
+    public void unregister(Statement stmt){
+        statements.remove(stmt);
+    }
+
+}
@@ -0,0 +1,182 @@
+package io.github.gitbucket.solidbase.migration;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches SQL statements generated from Liquibase changelogs by {@link LiquibaseMigration}.
+ * <p>
+ * Entries are keyed by the resource path, the content hash of the changelog and the short name of the database,
+ * so an edited changelog is compiled again. Entries are held in memory, and also stored in the given directory
+ * by {@link ArtifactCache} to be reused across JVM restarts if the directory is specified. Changelogs preprocessed
+ * for Liquibase are stored in the directory as well.
+ * </p>
+ * <p>
+ * Set the cache to {@link io.github.gitbucket.solidbase.Solidbase#setChangeLogCache(ChangeLogCache)}.
+ * The same instance can be shared by multiple <code>Solidbase</code> instances and threads.
+ * </p>
+ */
+public class ChangeLogCache {
+
+    private final Map<String, List<String>> cache = new ConcurrentHashMap<>();
+    private final ArtifactCache artifactCache;
+
+    /**
+     * Creates <code>ChangeLogCache</code> which holds entries in memory only.
+     */
+    public ChangeLogCache(){
+        this((ArtifactCache) null);
+    }
+
+    /**
+     * Creates <code>ChangeLogCache</code> which stores entries in the given directory as well.
+     *
+     * @param directory the cache directory. It's created if it doesn't exist.
+     */
+    public ChangeLogCache(Path directory){
+        this(directory == null ? null : new ArtifactCache(directory));
+    }
+
+    /**
+     * Creates <code>ChangeLogCache</code> which stores entries in the given artifact cache as well.
+     *
+     * @param artifactCache the artifact cache, or <code>null</code> to hold entries in memory only
+     */
+    public ChangeLogCache(ArtifactCache artifactCache){
+        this.artifactCache = artifactCache;
+    }
+
+    /**
+     * Returns cached SQL statements, or <code>null</code> if they are not cached.
+     */
+    public List<String> get(String path, String moduleId, String version, String databaseName, String source) throws IOException {
+        return getByKey(createKey(path, moduleId, version, databaseName, digest(source)));
+    }
+
+    /**
+     * Returns cached SQL statements generated from the given resource, or <code>null</code> if they are not cached.
+     * The resource is identified by {@link MigrationUtils#fingerprintResource(ClassLoader, String)},
+     * so its content is not read if it's in a jar file.
+     */
+    public List<String> get(ClassLoader classLoader, String path, String moduleId, String version, String databaseName) throws IOException {
+        return getByKey(createKey(path, moduleId, version, databaseName, fingerprintResource(classLoader, path)));
+    }
+
+    /**
+     * Caches SQL statements generated from the given changelog.
+     */
+    public void put(String path, String moduleId, String version, String databaseName, String source,
+                    List<String> sqlList) throws IOException {
+        putByKey(createKey(path, moduleId, version, databaseName, digest(source)), sqlList);
+    }
+
+    /**
+     * Caches SQL statements generated from the given resource.
+     */
+    public void put(ClassLoader classLoader, String path, String moduleId, String version, String databaseName,
+                    List<String> sqlList) throws IOException {
+        putByKey(createKey(path, moduleId, version, databaseName, fingerprintResource(classLoader, path)), sqlList);
+    }
+
+    /**
+     * Returns the changelog preprocessed for Liquibase from the given source,
+     * or <code>null</code> if it's not cached or this cache doesn't have a directory.
+     */
+    public byte[] getPreProcessed(String path, String moduleId, String version, String source) throws IOException {
+        if(artifactCache == null){
+            return null;
+        }
+        ByteBuffer buffer = artifactCache.get(createKey(path, moduleId, version, "preprocessed", digest(source)));
+        if(buffer == null){
+            return null;
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Stores the changelog preprocessed for Liquibase from the given source if this cache has a directory.
+     */
+    public void putPreProcessed(String path, String moduleId, String version, String source, byte[] changeLog) throws IOException {
+        if(artifactCache != null){
+            artifactCache.put(createKey(path, moduleId, version, "preprocessed", digest(source)), changeLog);
+        }
+    }
+
+    /**
+     * Removes all entries from memory. Files in the cache directory are not removed.
+     */
+    public void clear(){
+        cache.clear();
+    }
+
+    private List<String> getByKey(String key) throws IOException {
+        List<String> sqlList = cache.get(key);
+        if(sqlList == null && artifactCache != null){
+            ByteBuffer buffer = artifactCache.get(key);
+            if(buffer != null){
+                sqlList = decode(buffer);
+                if(sqlList != null){
+                    cache.put(key, sqlList);
+                }
+            }
+        }
+        return sqlList;
+    }
+
+    private void putByKey(String key, List<String> sqlList) throws IOException {
+        List<String> value = Collections.unmodifiableList(new ArrayList<>(sqlList));
+        cache.put(key, value);
+        if(artifactCache != null){
+            artifactCache.put(key, encode(value));
+        }
+    }
+
+    private static String createKey(String path, String moduleId, String version, String databaseName, String contentHash){
+        return digest(path + "\n" + moduleId + "\n" + version + "\n" + databaseName + "\n" + contentHash);
+    }
+
+    private static List<String> decode(ByteBuffer buffer){
+        try {
+            int size = buffer.getInt();
+            List<String> sqlList = new ArrayList<>(size);
+            for(int i = 0; i < size; i++){
+                int length = buffer.getInt();
+                ByteBuffer bytes = buffer.slice();
+                bytes.limit(length);
+                sqlList.add(StandardCharsets.UTF_8.decode(bytes).toString());
+                buffer.position(buffer.position() + length);
+            }
+            return Collections.unmodifiableList(sqlList);
+        } catch(RuntimeException ex){
+            // A broken file is regarded as a cache miss
+            return null;
+        }
+    }
+
+    private static byte[] encode(List<String> sqlList) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(sqlList.size());
+            for(String sql: sqlList){
+                byte[] sqlBytes = sql.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(sqlBytes.length);
+                out.write(sqlBytes);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,213 @@
+package io.github.gitbucket.solidbase.migration;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.exception.DatabaseException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Compiles Liquibase changelogs to SQL scripts at build time.
+ * <p>
+ * SQL is generated by an offline connection of Liquibase, so no database is required. The script of a changelog
+ * <code>update/core_1.0.0.xml</code> for H2 is stored as <code>solidbase-precompiled/update/core_1.0.0_h2.sql</code>
+ * on the classpath, and {@link LiquibaseMigration} executes it instead of parsing the changelog at runtime.
+ * The script records the content hash of the changelog, and it's ignored if the changelog has been modified since it was compiled.
+ * </p>
+ * <p>
+ * The default schema isn't written into SQL, but the script records the default schema and the database version which
+ * the offline connection assumed. It's used only for databases which have the same default schema and the same or
+ * a later version. Otherwise, SQL is generated from the changelog at runtime. Liquibase assumes the newest version
+ * unless the version is given, so give the minimum version of servers to use scripts for PostgreSQL and MySQL.
+ * </p>
+ * <p>
+ * Changelogs which use <code>${currentDateTime}</code>, and those whose generated SQL can't be split back into the same
+ * statements by {@link SqlLexer}, are not precompiled.
+ * </p>
+ */
+public class ChangeLogPrecompiler {
+
+    public static final String DIRECTORY = "solidbase-precompiled";
+
+    private static final String HEADER = "-- solidbase:";
+    private static final String SOURCE = "source";
+    private static final String SCHEMA = "schema";
+    private static final String VERSION = "version";
+
+    // Digests of changelogs by their fingerprints for each class loader
+    private static final Map<ClassLoader, Map<String, String>> SOURCE_DIGESTS = new WeakHashMap<>();
+
+    private final ClassLoader classLoader;
+
+    /**
+     * @param classLoader the class loader to load changelogs
+     */
+    public ChangeLogPrecompiler(ClassLoader classLoader){
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Compiles the changelog for the given database.
+     *
+     * @param path the resource path of the changelog
+     * @param databaseName the short name of the Liquibase database such as <code>h2</code> and <code>postgresql</code>
+     * @return the SQL script, or <code>null</code> if the changelog can't be precompiled
+     */
+    public String precompile(String path, String databaseName) throws Exception {
+        return precompile(path, databaseName, null);
+    }
+
+    /**
+     * Compiles the changelog for the given database version.
+     *
+     * @param path the resource path of the changelog
+     * @param databaseName the short name of the Liquibase database such as <code>h2</code> and <code>postgresql</code>
+     * @param databaseVersion the minimum version of the database such as <code>12.0</code>, or <code>null</code>
+     *                        to assume the newest version
+     * @return the SQL script, or <code>null</code> if the changelog can't be precompiled
+     */
+    public String precompile(String path, String databaseName, String databaseVersion) throws Exception {
+        String source = readResourceAsString(classLoader, path);
+        if(source == null){
+            throw new IOException("Changelog " + path + " is not found");
+        }
+        if(source.contains("${currentDateTime}")){
+            return null;
+        }
+
+        String url = "offline:" + databaseName + (databaseVersion == null ? "" : "?version=" + databaseVersion);
+        Database database = DatabaseFactory.getInstance().openDatabase(url, null, null, null,
+                new ClassLoaderResourceAccessor(classLoader));
+        try {
+            // Unqualified names are resolved to the default schema at runtime
+            database.setOutputDefaultSchema(false);
+            // The id and the author of the changeSet don't affect generated SQL
+            List<String> sqlList = new LiquibaseMigration(path).generateSql(database, classLoader, "solidbase", "precompiled",
+                    path, source, new HashMap<>());
+
+            StringBuilder sb = new StringBuilder();
+            sb.append(HEADER).append(SOURCE).append(' ').append(digestResource(classLoader, path)).append('\n');
+            if(database.getDefaultSchemaName() != null){
+                sb.append(HEADER).append(SCHEMA).append(' ').append(database.getDefaultSchemaName()).append('\n');
+            }
+            sb.append(HEADER).append(VERSION).append(' ').append(getVersion(database)).append('\n');
+            for(String sql: sqlList){
+                sb.append(sql).append(";\n");
+            }
+            String script = sb.toString();
+
+            // The script must be split in the same way at runtime
+            if(!SqlLexer.split(script, SqlLexer.Dialect.forDatabase(databaseName)).equals(sqlList)){
+                return null;
+            }
+            return script;
+        } finally {
+            ignoreException(database::close);
+        }
+    }
+
+    /**
+     * Returns the resource path of the precompiled script of the given changelog.
+     */
+    public static String getPrecompiledPath(String path, String databaseName){
+        String basePath = path.startsWith("/") ? path.substring(1) : path;
+        if(basePath.endsWith(".xml")){
+            basePath = basePath.substring(0, basePath.length() - 4);
+        }
+        return DIRECTORY + "/" + basePath + "_" + databaseName + ".sql";
+    }
+
+    /**
+     * Loads statements of the precompiled script of the given changelog for the database.
+     *
+     * @return statements, or <code>null</code> if the script doesn't exist, the changelog has been modified,
+     *         or the script was compiled for another default schema or a later version of the database
+     */
+    static List<String> loadPrecompiled(ClassLoader classLoader, String path, Database database) throws IOException, DatabaseException {
+        String databaseName = database.getShortName();
+        String precompiledPath = getPrecompiledPath(path, databaseName);
+        if(MigrationResourceIndex.getResource(classLoader, precompiledPath) == null){
+            return null;
+        }
+        String script = readResourceAsString(classLoader, precompiledPath);
+        Map<String, String> headers = readHeaders(script);
+        if(!digestSource(classLoader, path).equals(headers.get(SOURCE))){
+            return null;
+        }
+        String schemaName = headers.get(SCHEMA);
+        if(schemaName != null && !schemaName.equals(database.getDefaultSchemaName())){
+            return null;
+        }
+        String version = headers.get(VERSION);
+        if(version == null || compareVersions(version, getVersion(database)) > 0){
+            return null;
+        }
+        return SqlLexer.split(script, SqlLexer.Dialect.forDatabase(databaseName));
+    }
+
+    /**
+     * Returns the digest of the changelog. The changelog in a jar file is read only once while its fingerprint is unchanged.
+     */
+    private static String digestSource(ClassLoader classLoader, String path) throws IOException {
+        String fingerprint = fingerprintResource(classLoader, path);
+        Map<String, String> digests;
+        synchronized (SOURCE_DIGESTS) {
+            digests = SOURCE_DIGESTS.computeIfAbsent(classLoader, cl -> new HashMap<>());
+        }
+        synchronized (digests) {
+            String digest = digests.get(fingerprint);
+            if(digest == null){
+                digest = digestResource(classLoader, path);
+                digests.put(fingerprint, digest);
+            }
+            return digest;
+        }
+    }
+
+    private static Map<String, String> readHeaders(String script){
+        Map<String, String> headers = new HashMap<>();
+        int start = 0;
+        while(script.startsWith(HEADER, start)){
+            int end = script.indexOf('\n', start);
+            if(end < 0){
+                break;
+            }
+            String header = script.substring(start + HEADER.length(), end);
+            int space = header.indexOf(' ');
+            if(space > 0){
+                headers.put(header.substring(0, space), header.substring(space + 1));
+            }
+            start = end + 1;
+        }
+        return headers;
+    }
+
+    private static String getVersion(Database database) throws DatabaseException {
+        return database.getDatabaseMajorVersion() + "." + database.getDatabaseMinorVersion();
+    }
+
+    /**
+     * Compares versions in the form of <code>major.minor</code>.
+     */
+    private static int compareVersions(String version1, String version2){
+        String[] parts1 = version1.split("\\.");
+        String[] parts2 = version2.split("\\.");
+        for(int i = 0; i < Math.max(parts1.length, parts2.length); i++){
+            int result = Integer.compare(
+                    i < parts1.length ? Integer.parseInt(parts1[i]) : 0,
+                    i < parts2.length ? Integer.parseInt(parts2[i]) : 0);
+            if(result != 0){
+                return result;
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,30 @@
+package io.github.gitbucket.solidbase.migration;
+
+import java.util.Map;
+
+/**
+ * {@link Migration} which can tell the checksum of resources it executes.
+ * <p>
+ * It's used by {@link io.github.gitbucket.solidbase.Solidbase#setChecksumEnabled(boolean)} to detect
+ * modification of resources of versions which have been already applied.
+ * </p>
+ */
+public interface ChecksumMigration extends Migration {
+
+    /**
+     * Returns the checksum of resources which will be executed by {@link #migrate(String, String, Map)} with the same arguments.
+     * This method must not modify the database.
+     */
+    String checksum(String moduleId, String version, Map<String, Object> context) throws Exception;
+
+    /**
+     * Returns a fingerprint which changes whenever the checksum changes, but is cheaper to compute than the checksum,
+     * for example from CRCs recorded in jar files by {@link MigrationUtils#fingerprintResource(ClassLoader, String)}.
+     * It's used to find up-to-date modules without reading their resources. The default implementation returns the checksum.
+     * This method must not modify the database.
+     */
+    default String fingerprint(String moduleId, String version, Map<String, Object> context) throws Exception {
+        return checksum(moduleId, version, context);
+    }
+
+}
@@ -0,0 +1,217 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import io.github.gitbucket.solidbase.listener.MigrationListener;
+import io.github.gitbucket.solidbase.manager.JDBCProgressManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Provides data migration of a large table which is processed in chunks of key ranges.
+ * <p>
+ * The given SQL statement must have two parameters, the start (inclusive) and the end (exclusive) of the key range
+ * of a chunk, for example:
+ * </p>
+ * <pre>
+ * new ChunkedMigration("ISSUE", "ISSUE_ID",
+ *     "UPDATE ISSUE SET PRIORITY = 0 WHERE PRIORITY IS NULL AND ISSUE_ID &gt;= ? AND ISSUE_ID &lt; ?")
+ *     .withChunkSize(10000)
+ *     .withSleepMillis(100)
+ * </pre>
+ * <p>
+ * The key column must be an integer column. Chunks are executed from the minimum key to the maximum key at the start of the migration,
+ * and each chunk is committed in a transaction with its progress recorded by {@link JDBCProgressManager}, so the migration resumes from
+ * the last completed chunk after it's interrupted. Progress is recorded for each checksum of chunked migrations,
+ * so multiple chunked migrations of the same table in a version don't share it.
+ * Since chunks are committed, chunked migration can't be executed in transactional execution.
+ * Keys must be less than <code>Long.MAX_VALUE</code> because the end of key ranges is exclusive.
+ * </p>
+ */
+public class ChunkedMigration implements ChecksumMigration {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final String tableName;
+    private final String keyColumn;
+    private final String sql;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private long sleepMillis = 0;
+
+    /**
+     * Creates <code>ChunkedMigration</code>.
+     *
+     * @param tableName the table name
+     * @param keyColumn the integer key column of the table
+     * @param sql the SQL statement which takes the start and the end of the key range of a chunk as parameters
+     */
+    public ChunkedMigration(String tableName, String keyColumn, String sql){
+        if(!IDENTIFIER.matcher(tableName).matches()){
+            throw new IllegalArgumentException("Invalid table name: " + tableName);
+        }
+        if(!IDENTIFIER.matcher(keyColumn).matches()){
+            throw new IllegalArgumentException("Invalid column name: " + keyColumn);
+        }
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.sql = sql;
+    }
+
+    /**
+     * Sets the size of key ranges of chunks.
+     *
+     * @param chunkSize the size of key ranges (default is 1000)
+     * @return this migration
+     */
+    public ChunkedMigration withChunkSize(int chunkSize){
+        if(chunkSize < 1){
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Sets the time to sleep between chunks to throttle the load of the database and replication.
+     *
+     * @param sleepMillis the time in milliseconds (default is 0)
+     * @return this migration
+     */
+    public ChunkedMigration withSleepMillis(long sleepMillis){
+        this.sleepMillis = sleepMillis;
+        return this;
+    }
+
+    @Override
+    public void migrate(String moduleId, String version, Map<String, Object> context) throws Exception {
+        Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+        MigrationListener listener = (MigrationListener) context.get(Solidbase.LISTENER);
+        CancellationToken cancellationToken = CancellationToken.fromContext(context);
+        if(Boolean.TRUE.equals(context.get(Solidbase.TRANSACTION))){
+            throw new IllegalStateException("ChunkedMigration can't be executed in transactional execution because it commits each chunk");
+        }
+        String checksum = checksum(moduleId, version, context);
+
+        JDBCProgressManager progressManager = new JDBCProgressManager(conn);
+        progressManager.initialize();
+        commit(conn);
+
+        // Each chunk must be committed with its progress, so a chunk isn't applied twice after a crash
+        boolean autoCommit = conn.getAutoCommit();
+        if(autoCommit){
+            conn.setAutoCommit(false);
+        }
+        try {
+            migrateChunks(conn, progressManager, listener, cancellationToken, moduleId, version, checksum);
+        } catch(Exception ex){
+            if(autoCommit){
+                try {
+                    conn.rollback();
+                } catch(SQLException e){
+                    ex.addSuppressed(e);
+                }
+            }
+            throw ex;
+        } finally {
+            if(autoCommit){
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void migrateChunks(Connection conn, JDBCProgressManager progressManager, MigrationListener listener,
+                               CancellationToken cancellationToken, String moduleId, String version, String checksum) throws Exception {
+        long[] range = getKeyRange(conn);
+        if(range != null){
+            Long nextKey = progressManager.getNextKey(moduleId, version, tableName, checksum);
+            long from = nextKey == null ? range[0] : nextKey;
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                if(cancellationToken != null){
+                    cancellationToken.register(stmt);
+                }
+                try {
+                    while(from <= range[1]){
+                        // Committed chunks are resumed next time
+                        if(cancellationToken != null){
+                            cancellationToken.throwIfCancelled();
+                        }
+                        // The last chunk ends at Long.MAX_VALUE instead of overflowing
+                        long to = from > Long.MAX_VALUE - chunkSize ? Long.MAX_VALUE : from + chunkSize;
+                        executeChunk(stmt, listener, moduleId, version, from, to);
+                        progressManager.updateNextKey(moduleId, version, tableName, checksum, to);
+                        commit(conn);
+                        if(to == Long.MAX_VALUE){
+                            break;
+                        }
+                        from = to;
+
+                        if(sleepMillis > 0 && from <= range[1]){
+                            Thread.sleep(sleepMillis);
+                        }
+                    }
+                } finally {
+                    if(cancellationToken != null){
+                        cancellationToken.unregister(stmt);
+                    }
+                }
+            }
+        }
+        progressManager.remove(moduleId, version, tableName, checksum);
+    }
+
+    @Override
+    public String checksum(String moduleId, String version, Map<String, Object> context){
+        return MigrationUtils.digest(tableName + ":" + keyColumn + ":" + sql);
+    }
+
+    /**
+     * Returns the minimum and the maximum key of the table, or <code>null</code> if the table is empty.
+     */
+    private long[] getKeyRange(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + tableName)) {
+            if(rs.next()){
+                long min = rs.getLong(1);
+                if(!rs.wasNull()){
+                    return new long[]{ min, rs.getLong(2) };
+                }
+            }
+            return null;
+        }
+    }
+
+    private void executeChunk(PreparedStatement stmt, MigrationListener listener,
+                              String moduleId, String version, long from, long to) throws SQLException {
+        if(listener != null){
+            listener.onStatementStart(moduleId, version, sql);
+        }
+        long start = System.nanoTime();
+        try {
+            stmt.setLong(1, from);
+            stmt.setLong(2, to);
+            int rowCount = stmt.executeUpdate();
+            if(listener != null){
+                listener.onStatementEnd(moduleId, version, sql, System.nanoTime() - start, rowCount, null);
+            }
+        } catch(SQLException ex){
+            if(listener != null){
+                listener.onStatementEnd(moduleId, version, sql, System.nanoTime() - start, 0, ex);
+            }
+            throw ex;
+        }
+    }
+
+    private static void commit(Connection conn) throws SQLException {
+        if(!conn.getAutoCommit()){
+            conn.commit();
+        }
+    }
+
+}
@@ -0,0 +1,387 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import liquibase.database.Database;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+
+/**
+ * Provides bulk data loading into a table from a CSV or TSV file on the classpath.
+ * <p>
+ * The first line of the file must be column names. Empty fields are loaded as <code>NULL</code>.
+ * Files whose name ends with <code>.tsv</code> are read as tab separated values.
+ * </p>
+ * <p>
+ * The fastest way of each database is chosen by the short name of the database:
+ * <code>COPY</code> for PostgreSQL, <code>LOAD DATA LOCAL INFILE</code> for MySQL (requires <code>allowLoadLocalInfile=true</code>
+ * connection property) and <code>CSVREAD</code> for embedded H2. Otherwise, or if local infile is disabled,
+ * rows are inserted by batched prepared statements, which can be cancelled by {@link CancellationToken}.
+ * The file is streamed and not loaded into memory, except that it's copied to a temporary file for <code>CSVREAD</code>.
+ * </p>
+ * <p>
+ * <code>LOAD DATA LOCAL INFILE</code> skips rows with duplicate keys or invalid values with warnings. They are reported
+ * by <code>SQLException</code> as well as other databases, but rows which have been loaded are not rolled back
+ * unless the migration is executed in a transaction.
+ * </p>
+ */
+public class CsvMigration implements ChecksumMigration {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // ER_NOT_ALLOWED_COMMAND of MySQL 5.7 and MariaDB, ER_CLIENT_LOCAL_FILES_DISABLED of MySQL 8
+    // and ER_LOAD_INFILE_CAPABILITY_DISABLED of MariaDB
+    private static final Set<Integer> LOCAL_INFILE_DISABLED = new HashSet<>(Arrays.asList(1148, 3948, 4166));
+
+    private final String tableName;
+    private final String path;
+
+    /**
+     * Creates <code>CsvMigration</code> that loads <code>/$MODULE_ID_$VERSION_$TABLE_NAME.csv</code> on the classpath.
+     *
+     * @param tableName the table name
+     */
+    public CsvMigration(String tableName){
+        this(tableName, null);
+    }
+
+    /**
+     * Creates <code>CsvMigration</code> that loads the specified CSV or TSV file.
+     *
+     * @param tableName the table name
+     * @param path the resource path on the classpath.
+     */
+    public CsvMigration(String tableName, String path){
+        if(!IDENTIFIER.matcher(tableName).matches()){
+            throw new IllegalArgumentException("Invalid table name: " + tableName);
+        }
+        this.tableName = tableName;
+        this.path = path;
+    }
+
+    @Override
+    public void migrate(String moduleId, String version, Map<String, Object> context) throws Exception {
+        Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        Database db = (Database) context.get(Solidbase.DATABASE);
+
+        migrate(conn, db, cl, moduleId, version, context);
+    }
+
+    protected void migrate(Connection conn, Database database, ClassLoader classLoader,
+                           String moduleId, String version, Map<String, Object> context) throws Exception {
+        String path = resolvePath(moduleId, version);
+        if(MigrationResourceIndex.getResource(classLoader, path) == null){
+            throw new FileNotFoundException(path);
+        }
+        char separator = path.endsWith(".tsv") ? '\t' : ',';
+
+        String[] columns;
+        try (BufferedReader reader = open(classLoader, path)) {
+            columns = readHeader(reader, separator);
+        }
+
+        boolean loaded = false;
+        switch(database.getShortName()){
+            case "postgresql":
+                loaded = copyIn(conn, classLoader, path, separator, columns);
+                break;
+            case "mysql":
+            case "mariadb":
+                loaded = loadData(conn, classLoader, path, separator, columns);
+                break;
+            case "h2":
+                loaded = csvRead(conn, classLoader, path, separator, columns);
+                break;
+        }
+        if(!loaded){
+            Integer batchSize = (Integer) context.get(Solidbase.BATCH_SIZE);
+            insert(conn, classLoader, path, separator, columns,
+                    batchSize == null || batchSize <= 1 ? DEFAULT_BATCH_SIZE : batchSize, CancellationToken.fromContext(context));
+        }
+    }
+
+    @Override
+    public String checksum(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        // the target table is a part of the migration as well as the file
+        return MigrationUtils.digest(tableName + ":" + MigrationUtils.digestResource(cl, resolvePath(moduleId, version)));
+    }
+
+    @Override
+    public String fingerprint(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        return MigrationUtils.digest(tableName + ":" + MigrationUtils.fingerprintResource(cl, resolvePath(moduleId, version)));
+    }
+
+    private String resolvePath(String moduleId, String version){
+        if(this.path == null){
+            return moduleId + "_" + version + "_" + tableName + ".csv";
+        }
+        return this.path;
+    }
+
+    /**
+     * Loads by <code>COPY</code> of PostgreSQL JDBC driver. The driver is accessed reflectively to avoid the dependency.
+     */
+    private boolean copyIn(Connection conn, ClassLoader classLoader, String path, char separator, String[] columns) throws Exception {
+        Class<?> pgConnectionClass;
+        Class<?> copyManagerClass;
+        try {
+            pgConnectionClass = Class.forName("org.postgresql.PGConnection", true, conn.getClass().getClassLoader());
+            copyManagerClass = Class.forName("org.postgresql.copy.CopyManager", true, pgConnectionClass.getClassLoader());
+        } catch(ClassNotFoundException ex){
+            return false;
+        }
+        if(!conn.isWrapperFor(pgConnectionClass)){
+            return false;
+        }
+        String columnList = String.join(", ", columns);
+        String sql = "COPY " + tableName + " (" + columnList + ") FROM STDIN WITH (FORMAT csv, " +
+                "DELIMITER " + (separator == '\t' ? "E'\\t'" : "','") + ", FORCE_NULL (" + columnList + "))";
+
+        try (BufferedReader reader = open(classLoader, path)) {
+            // skip the header line
+            reader.readLine();
+            Object copyManager = pgConnectionClass.getMethod("getCopyAPI").invoke(conn.unwrap(pgConnectionClass));
+            copyManagerClass.getMethod("copyIn", String.class, Reader.class).invoke(copyManager, sql, reader);
+        } catch(InvocationTargetException ex){
+            throw unwrap(ex);
+        }
+        return true;
+    }
+
+    /**
+     * Loads by <code>LOAD DATA LOCAL INFILE</code> of MySQL Connector/J. The driver is accessed reflectively to avoid the dependency.
+     * Returns false if local infile is disabled by the client or the server, then rows are inserted by the fallback.
+     */
+    private boolean loadData(Connection conn, ClassLoader classLoader, String path, char separator, String[] columns) throws Exception {
+        StringBuilder variables = new StringBuilder();
+        StringBuilder assignments = new StringBuilder();
+        for(int i = 0; i < columns.length; i++){
+            if(i > 0){
+                variables.append(", ");
+                assignments.append(", ");
+            }
+            variables.append("@c").append(i);
+            if(i == columns.length - 1){
+                // strip CR of CRLF line breaks
+                assignments.append(columns[i]).append(" = NULLIF(TRIM(TRAILING '\\r' FROM @c").append(i).append("), '')");
+            } else {
+                assignments.append(columns[i]).append(" = NULLIF(@c").append(i).append(", '')");
+            }
+        }
+        String sql = "LOAD DATA LOCAL INFILE 'solidbase.csv' INTO TABLE " + tableName + " CHARACTER SET utf8mb4" +
+                " FIELDS TERMINATED BY '" + (separator == '\t' ? "\\t" : ",") + "' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY ''" +
+                " LINES TERMINATED BY '\\n' IGNORE 1 LINES (" + variables + ") SET " + assignments;
+
+        try (Statement stmt = conn.createStatement(); InputStream in = MigrationResourceIndex.openStream(classLoader, path)) {
+            Class<?> statementClass;
+            try {
+                statementClass = Class.forName("com.mysql.cj.jdbc.JdbcStatement", true, stmt.getClass().getClassLoader());
+            } catch(ClassNotFoundException ex){
+                return false;
+            }
+            if(!stmt.isWrapperFor(statementClass)){
+                return false;
+            }
+            statementClass.getMethod("setLocalInfileInputStream", InputStream.class).invoke(stmt.unwrap(statementClass), in);
+            try {
+                stmt.execute(sql);
+            } catch(SQLException ex){
+                // Nothing is sent to the server if local infile is disabled
+                if(isLocalInfileDisabled(ex)){
+                    return false;
+                }
+                throw ex;
+            }
+            // Errors of rows are downgraded to warnings by LOCAL
+            SQLWarning warning = stmt.getWarnings();
+            if(warning != null){
+                throw new SQLException("Failed to load " + path + " into " + tableName + ": " + warning.getMessage(),
+                        warning.getSQLState(), warning.getErrorCode(), warning);
+            }
+        } catch(InvocationTargetException ex){
+            throw unwrap(ex);
+        }
+        return true;
+    }
+
+    private static boolean isLocalInfileDisabled(SQLException ex){
+        if(LOCAL_INFILE_DISABLED.contains(ex.getErrorCode())){
+            return true;
+        }
+        // Connector/J rejects the request of the server by itself if allowLoadLocalInfile is not set
+        return ex.getMessage() != null && ex.getMessage().contains("allowLoadLocalInfile");
+    }
+
+    /**
+     * Loads by <code>CSVREAD</code> of H2. It's available only when a local file is visible to H2 (embedded mode).
+     * The resource is copied to a temporary file, so the same file as the checksum is loaded regardless of class loaders of H2.
+     */
+    private boolean csvRead(Connection conn, ClassLoader classLoader, String path, char separator, String[] columns) throws Exception {
+        String url = conn.getMetaData().getURL();
+        if(url.startsWith("jdbc:h2:tcp:") || url.startsWith("jdbc:h2:ssl:")){
+            return false;
+        }
+        Path file = Files.createTempFile("solidbase-", ".csv");
+        try {
+            try (InputStream in = MigrationResourceIndex.openStream(classLoader, path)) {
+                if(in == null){
+                    throw new FileNotFoundException(path);
+                }
+                Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String columnList = String.join(", ", columns);
+            String options = "charset=UTF-8 fieldSeparator=" + (separator == '\t' ? "' || CHAR(9) || '" : ",");
+            String sql = "INSERT INTO " + tableName + " (" + columnList + ") SELECT " + columnList +
+                    " FROM CSVREAD('" + file.toAbsolutePath().toString().replace("'", "''") + "', NULL, '" + options + "')";
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(sql);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return true;
+    }
+
+    /**
+     * Inserts rows by batched prepared statements. Values are bound with SQL types of columns and converted by the driver,
+     * because strict drivers such as PostgreSQL reject strings for columns of other types.
+     */
+    private void insert(Connection conn, ClassLoader classLoader, String path, char separator, String[] columns,
+                        int batchSize, CancellationToken cancellationToken) throws IOException, SQLException {
+        String columnList = String.join(", ", columns);
+        int[] types = getColumnTypes(conn, columnList);
+
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(tableName).append(" (").append(columnList).append(") VALUES (");
+        for(int i = 0; i < columns.length; i++){
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        try (CsvReader reader = new CsvReader(open(classLoader, path), separator);
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            if(cancellationToken != null){
+                cancellationToken.register(stmt);
+            }
+            try {
+                // skip the header line
+                reader.readRecord();
+                int count = 0;
+                String[] record;
+                while((record = reader.readRecord()) != null){
+                    if(record.length == 1 && record[0] == null){
+                        // skip empty lines
+                        continue;
+                    }
+                    for(int i = 0; i < columns.length; i++){
+                        String value = i < record.length ? record[i] : null;
+                        if(value == null){
+                            stmt.setNull(i + 1, types[i]);
+                        } else {
+                            stmt.setObject(i + 1, value, types[i]);
+                        }
+                    }
+                    stmt.addBatch();
+                    if(++count % batchSize == 0){
+                        executeBatch(stmt, cancellationToken);
+                    }
+                }
+                if(count % batchSize != 0){
+                    executeBatch(stmt, cancellationToken);
+                }
+            } finally {
+                if(cancellationToken != null){
+                    cancellationToken.unregister(stmt);
+                }
+            }
+        }
+    }
+
+    private static void executeBatch(PreparedStatement stmt, CancellationToken cancellationToken) throws SQLException {
+        if(cancellationToken != null){
+            cancellationToken.throwIfCancelled();
+        }
+        try {
+            stmt.executeBatch();
+        } catch(SQLException ex){
+            // The batch might have been aborted by the cancellation
+            if(cancellationToken != null && cancellationToken.isCancelled()){
+                CancellationException cancelled = new CancellationException("Migration was cancelled");
+                cancelled.initCause(ex);
+                throw cancelled;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns SQL types of the given columns of the table.
+     */
+    private int[] getColumnTypes(Connection conn, String columnList) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + columnList + " FROM " + tableName + " WHERE 1 = 0")) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int[] types = new int[metaData.getColumnCount()];
+            for(int i = 0; i < types.length; i++){
+                types[i] = metaData.getColumnType(i + 1);
+            }
+            return types;
+        }
+    }
+
+    private String[] readHeader(BufferedReader reader, char separator) throws IOException {
+        String line = reader.readLine();
+        if(line == null){
+            throw new IOException("CSV file doesn't have a header line: " + tableName);
+        }
+        String[] columns = new CsvReader(new StringReader(line), separator).readRecord();
+        for(int i = 0; i < columns.length; i++){
+            if(columns[i] == null || !IDENTIFIER.matcher(columns[i].trim()).matches()){
+                throw new IllegalArgumentException("Invalid column name in CSV header: " + columns[i]);
+            }
+            columns[i] = columns[i].trim();
+        }
+        return columns;
+    }
+
+    private static BufferedReader open(ClassLoader classLoader, String path) throws IOException {
+        InputStream in = MigrationResourceIndex.openStream(classLoader, path);
+        if(in == null){
+            throw new FileNotFoundException(path);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static Exception unwrap(InvocationTargetException ex){
+        Throwable cause = ex.getCause();
+        return cause instanceof Exception ? (Exception) cause : ex;
+    }
+
+}
@@ -0,0 +1,101 @@
+package io.github.gitbucket.solidbase.migration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads records from CSV or TSV one by one.
+ * <p>
+ * Fields may be enclosed in double quotes which can contain separators, line breaks and doubled double quotes.
+ * Empty fields are read as <code>null</code>.
+ * </p>
+ */
+class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private final char separator;
+    private int next = -2;
+
+    CsvReader(Reader reader, char separator){
+        this.reader = reader;
+        this.separator = separator;
+    }
+
+    /**
+     * Reads the next record. Returns <code>null</code> at the end of the stream.
+     */
+    String[] readRecord() throws IOException {
+        int c = read();
+        if(c == -1){
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        while(true){
+            if(c == '"' && sb.length() == 0 && !quoted){
+                quoted = true;
+                readQuoted(sb);
+                c = read();
+                continue;
+            }
+            if(c == separator){
+                fields.add(sb.length() == 0 ? null : sb.toString());
+                sb.setLength(0);
+                quoted = false;
+            } else if(c == '\n' || c == -1){
+                break;
+            } else if(c == '\r'){
+                int d = read();
+                if(d != '\n' && d != -1){
+                    unread(d);
+                }
+                break;
+            } else {
+                sb.append((char) c);
+            }
+            c = read();
+        }
+        fields.add(sb.length() == 0 ? null : sb.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private void readQuoted(StringBuilder sb) throws IOException {
+        int c;
+        while((c = read()) != -1){
+            if(c == '"'){
+                int d = read();
+                if(d == '"'){
+                    sb.append('"');
+                } else {
+                    unread(d);
+                    return;
+                }
+            } else {
+                sb.append((char) c);
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if(next != -2){
+            int c = next;
+            next = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c){
+        next = c;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
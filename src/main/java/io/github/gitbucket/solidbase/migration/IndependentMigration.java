@@ -0,0 +1,63 @@
+package io.github.gitbucket.solidbase.migration;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps a {@link Migration} which doesn't depend on other independent migrations in the same version,
+ * such as creating indexes on different tables.
+ * <p>
+ * When Solidbase runs with a <code>DataSource</code>, consecutive independent migrations in a version are executed
+ * concurrently, each on its own connection obtained from the <code>DataSource</code>. Their changes are committed
+ * on their connections before the version is recorded. Otherwise, they are executed one by one as usual.
+ * </p>
+ * <pre>
+ * new Version("1.1.0",
+ *   new IndependentMigration(new SqlMigration("update/1.1.0_issue_index.sql")),
+ *   new IndependentMigration(new SqlMigration("update/1.1.0_comment_index.sql"))
+ * )
+ * </pre>
+ */
+public class IndependentMigration implements PlannableMigration, ChecksumMigration {
+
+    private final Migration migration;
+
+    public IndependentMigration(Migration migration){
+        this.migration = migration;
+    }
+
+    public Migration getMigration(){
+        return migration;
+    }
+
+    @Override
+    public void migrate(String moduleId, String version, Map<String, Object> context) throws Exception {
+        migration.migrate(moduleId, version, context);
+    }
+
+    @Override
+    public List<String> plan(String moduleId, String version, Map<String, Object> context) throws Exception {
+        if(migration instanceof PlannableMigration){
+            return ((PlannableMigration) migration).plan(moduleId, version, context);
+        }
+        return null;
+    }
+
+    @Override
+    public String checksum(String moduleId, String version, Map<String, Object> context) throws Exception {
+        if(migration instanceof ChecksumMigration){
+            return ((ChecksumMigration) migration).checksum(moduleId, version, context);
+        }
+        // Same as migrations which aren't ChecksumMigration
+        return "-";
+    }
+
+    @Override
+    public String fingerprint(String moduleId, String version, Map<String, Object> context) throws Exception {
+        if(migration instanceof ChecksumMigration){
+            return ((ChecksumMigration) migration).fingerprint(moduleId, version, context);
+        }
+        return "-";
+    }
+
+}
@@ -6,12 +6,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
 import io.github.gitbucket.solidbase.Solidbase;
+import io.github.gitbucket.solidbase.listener.MigrationListener;
 import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
 
 import liquibase.*;
@@ -30,7 +30,9 @@ import liquibase.statement.SqlStatement;
 /**
  * Provides database migration using Liquibase.
  */
-public class LiquibaseMigration implements Migration {
+public class LiquibaseMigration implements PlannableMigration, ChecksumMigration {
+
+    private static final LiquibaseXmlPreProcessor PRE_PROCESSOR = new LiquibaseXmlPreProcessor();
 
     private final String path;
 
@@ -61,7 +63,79 @@ public class LiquibaseMigration implements Migration {
 
     protected void migrate(Connection conn, Database database, ClassLoader classLoader,
                            String moduleId, String version, Map<String, Object> context) throws Exception {
+        List<String> sqlList = getSql(database, classLoader, moduleId, version, context);
+        StatementExecutor.fromContext(conn, context, moduleId, version).execute(sqlList);
+    }
+
+    @Override
+    public List<String> plan(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        Database db = (Database) context.get(Solidbase.DATABASE);
+
+        return getSql(db, cl, moduleId, version, context);
+    }
+
+    @Override
+    public String checksum(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        Database db = (Database) context.get(Solidbase.DATABASE);
 
+        return MigrationUtils.digestResource(cl, resolvePath(db, cl, moduleId, version));
+    }
+
+    @Override
+    public String fingerprint(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        Database db = (Database) context.get(Solidbase.DATABASE);
+
+        return MigrationUtils.fingerprintResource(cl, resolvePath(db, cl, moduleId, version));
+    }
+
+    private List<String> getSql(Database database, ClassLoader classLoader,
+                                String moduleId, String version, Map<String, Object> context) throws Exception {
+        String path = resolvePath(database, classLoader, moduleId, version);
+
+        ChangeLogCache cache = (ChangeLogCache) context.get(Solidbase.CHANGELOG_CACHE);
+        // Generated SQL is qualified by the default schema, and SQL rewritten for online DDL is cached separately
+        String schemaName = database.getDefaultSchemaName();
+        String databaseName = database.getShortName() + (schemaName == null ? "" : "@" + schemaName) +
+                (isOnlineDdl(context) ? (isTransaction(context) ? "+online+tx" : "+online") : "");
+
+        // Use SQL precompiled at build time if it exists for the default schema and the version of the database
+        if(!isOnlineDdl(context)){
+            List<String> sqlList = ChangeLogPrecompiler.loadPrecompiled(classLoader, path, database);
+            if(sqlList != null){
+                return sqlList;
+            }
+        }
+
+        // Look up the cache before reading the changelog
+        if(cache != null){
+            List<String> sqlList = cache.get(classLoader, path, moduleId, version, databaseName);
+            if(sqlList != null){
+                return sqlList;
+            }
+        }
+
+        String source = MigrationUtils.readResourceAsString(classLoader, path);
+        List<String> sqlList = generateSql(database, classLoader, moduleId, version, path, source, context);
+        // Changelogs which use the current time can't be cached
+        if(cache != null && !source.contains("${currentDateTime}")){
+            cache.put(classLoader, path, moduleId, version, databaseName, sqlList);
+        }
+        return sqlList;
+    }
+
+    private static boolean isOnlineDdl(Map<String, Object> context){
+        return Boolean.TRUE.equals(context.get(Solidbase.ONLINE_DDL));
+    }
+
+    private static boolean isTransaction(Map<String, Object> context){
+        return Boolean.TRUE.equals(context.get(Solidbase.TRANSACTION));
+    }
+
+    private String resolvePath(Database database, ClassLoader classLoader,
+                               String moduleId, String version) throws FileNotFoundException {
         List<String> fileNames = new ArrayList<>();
         if(this.path != null){
             if(this.path.endsWith(".xml")){
@@ -72,41 +146,76 @@ public class LiquibaseMigration implements Migration {
         fileNames.add(moduleId + "_" + version + "_" + database.getShortName() + ".xml");
         fileNames.add(moduleId + "_" + version + ".xml");
 
-        String path = null;
-        String source = null;
-        for(String fileName: fileNames){
-            source = MigrationUtils.readResourceAsString(classLoader, fileName);
-            if(source != null){
-                path = fileName; 
-                break;
+        String path = MigrationResourceIndex.findFirst(classLoader, fileNames);
+        if(path == null){
+            throw new FileNotFoundException(fileNames.get(fileNames.size() - 1));
+        }
+        return path;
+    }
+
+    /**
+     * Generates SQL statements from the given changelog for the database.
+     *
+     * @param database the database
+     * @param classLoader the class loader
+     * @param moduleId the module id
+     * @param version the version
+     * @param path the resource path of the changelog
+     * @param source the content of the changelog
+     * @param context the migration context
+     * @return SQL statements
+     */
+    protected List<String> generateSql(Database database, ClassLoader classLoader, String moduleId, String version,
+                                       String path, String source, Map<String, Object> context) throws Exception {
+        ChangeLogCache cache = (ChangeLogCache) context.get(Solidbase.CHANGELOG_CACHE);
+        byte[] changeLog = cache == null ? null : cache.getPreProcessed(path, moduleId, version, source);
+        if(changeLog == null){
+            changeLog = PRE_PROCESSOR.preProcessToBytes(moduleId, version, source);
+            if(cache != null){
+                cache.putPreProcessed(path, moduleId, version, source, changeLog);
             }
         }
-        
-        Liquibase liquibase = new Liquibase(path, new StringResourceAccessor(path,
-                new LiquibaseXmlPreProcessor().preProcess(moduleId, version, source), classLoader), database);
+
+        Liquibase liquibase = new Liquibase(path, new StringResourceAccessor(path, changeLog, classLoader), database);
 
         ChangeLogParameters params = liquibase.getChangeLogParameters();
         params.set("currentDateTime", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()));
 
+        OnlineDdlRewriter rewriter = isOnlineDdl(context) ? new OnlineDdlRewriter(database, isTransaction(context)) : null;
+
+        List<String> sqlList = new ArrayList<>();
         DatabaseChangeLog changeLogs = liquibase.getDatabaseChangeLog();
         List<ChangeSet> changeSets = changeLogs.getChangeSets();
         for(ChangeSet changeSet: changeSets){
             for(Change change: changeSet.getChanges()){
                 SqlStatement[] statements = change.generateStatements(database);
                 Sql[] sqls = SqlGeneratorFactory.getInstance().generateSql(statements, database);
+                List<String> changeSqlList = new ArrayList<>();
                 for(Sql sql: sqls){
-                    updateDatabase(conn, sql.toSql());
+                    changeSqlList.add(sql.toSql());
+                }
+                if(rewriter != null){
+                    changeSqlList = rewriter.rewrite(change, changeSqlList);
                 }
+                sqlList.addAll(changeSqlList);
+            }
+        }
+
+        MigrationListener listener = (MigrationListener) context.get(Solidbase.LISTENER);
+        if(rewriter != null && listener != null){
+            for(String sql: rewriter.getBlockingStatements()){
+                listener.onBlockingStatement(moduleId, version, sql);
             }
         }
+        return sqlList;
     }
 
     private static class StringResourceAccessor extends ClassLoaderResourceAccessor {
         private final String fileName;
-        private final String source;
+        private final byte[] source;
         private final ClassLoader classLoader;
 
-        public StringResourceAccessor(String fileName, String source, ClassLoader classLoader){
+        public StringResourceAccessor(String fileName, byte[] source, ClassLoader classLoader){
             super(classLoader);
             this.fileName = fileName;
             this.source = source;
@@ -118,7 +227,7 @@ public class LiquibaseMigration implements Migration {
             if(path.equals(fileName)){
                 List<Resource> returnList = new ArrayList<>();
                 try {
-                    URI uri = classLoader.getResources(path).nextElement().toURI();
+                    URI uri = MigrationResourceIndex.getResource(classLoader, path).toURI();
                     returnList.add(new ByteArrayResource(source, path, uri));
                 } catch (URISyntaxException e) {
                     throw new RuntimeException(e);
@@ -131,16 +240,16 @@ public class LiquibaseMigration implements Migration {
     }
 
     private static class ByteArrayResource extends AbstractResource {
-        private final String source;
+        private final byte[] source;
 
-        public ByteArrayResource(String source, String path, URI uri) {
+        public ByteArrayResource(byte[] source, String path, URI uri) {
             super(path, uri);
             this.source = source;
         }
 
         @Override
         public InputStream openInputStream() throws IOException {
-            return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+            return new ByteArrayInputStream(source);
         }
 
         @Override
@@ -1,94 +1,215 @@
 package io.github.gitbucket.solidbase.migration;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.ByteArrayInputStream;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Converts a changeSet of Solidbase to a Liquibase changelog.
+ * <p>
+ * The changeSet is transformed as a stream of StAX events, so only elements of a column which has constraint attributes
+ * are buffered. Factories of StAX are created once and shared because looking them up is expensive.
+ * </p>
+ */
 public class LiquibaseXmlPreProcessor implements LiquibasePreProcessor {
 
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "\n" +
+            "<databaseChangeLog\n" +
+            "    xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n" +
+            "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+            "    xmlns:ext=\"http://www.liquibase.org/xml/ns/dbchangelog-ext\"\n" +
+            "    xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-3.0.xsd\n" +
+            "        http://www.liquibase.org/xml/ns/dbchangelog-ext http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-ext.xsd\">\n" +
+            "\n";
+
+    private static final String FOOTER = "\n</databaseChangeLog>\n";
+
     @Override
     public String preProcess(String moduleId, String version, String source) throws Exception {
-        // add required attributes: id and author
-        Document doc = parseXml(source);
-        Element root = doc.getDocumentElement();
-        if(!root.hasAttribute("id")) {
-            root.setAttribute("id", version);
-        }
-        if(!root.hasAttribute("author")) {
-            root.setAttribute("author", moduleId);
-        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(source.length() + HEADER.length() + FOOTER.length());
+        preProcess(moduleId, version, new StringReader(source), out);
+        return out.toString("UTF-8");
+    }
 
-        // Move constraint attributes defined in columns to child constraints element
-        NodeList columns = root.getElementsByTagName("column");
-        for(int i = 0; i < columns.getLength(); i++){
-            Element column = (Element) columns.item(i);
-            Map<String, String> constraintsMap = new HashMap<>();
-            for(String constraintAttributeName: CONSTRAINT_PROPERTIES){
-                if(column.hasAttribute(constraintAttributeName)){
-                    constraintsMap.put(constraintAttributeName, column.getAttribute(constraintAttributeName));
-                    column.removeAttribute(constraintAttributeName);
+    /**
+     * Converts the given changeSet and returns the changelog encoded in UTF-8,
+     * which can be passed to Liquibase by <code>ByteArrayInputStream</code> without decoding it to a string.
+     *
+     * @param moduleId the module id
+     * @param version the version
+     * @param source the content of the changeSet
+     * @return the changelog encoded in UTF-8
+     */
+    public byte[] preProcessToBytes(String moduleId, String version, String source) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(source.length() + HEADER.length() + FOOTER.length());
+        preProcess(moduleId, version, new StringReader(source), out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Converts the changeSet read from the given reader and writes the changelog to the given stream in UTF-8.
+     *
+     * @param moduleId the module id
+     * @param version the version
+     * @param source the reader of the changeSet
+     * @param out the output stream of the changelog. It's not closed by this method.
+     */
+    public void preProcess(String moduleId, String version, Reader source, OutputStream out) throws Exception {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(HEADER);
+
+        XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(source);
+        XMLEventWriter eventWriter = OUTPUT_FACTORY.createXMLEventWriter(writer);
+        try {
+            boolean root = true;
+            while(reader.hasNext()){
+                XMLEvent event = reader.nextEvent();
+                switch(event.getEventType()){
+                    case XMLEvent.START_DOCUMENT:
+                    case XMLEvent.END_DOCUMENT:
+                    case XMLEvent.DTD:
+                        break;
+                    case XMLEvent.START_ELEMENT:
+                        StartElement element = event.asStartElement();
+                        if(root){
+                            // add required attributes: id and author
+                            Map<String, String> attributes = new LinkedHashMap<>();
+                            attributes.put("id", version);
+                            attributes.put("author", moduleId);
+                            eventWriter.add(addAttributes(element, attributes));
+                            root = false;
+                        } else if(element.getName().getLocalPart().equals("column")){
+                            writeColumn(element, reader, eventWriter);
+                        } else {
+                            eventWriter.add(element);
+                        }
+                        break;
+                    default:
+                        eventWriter.add(event);
                 }
             }
-            if(!constraintsMap.isEmpty()){
-                NodeList nodes = column.getElementsByTagName("constraints");
-                Element constraints = null;
-                if(nodes.getLength() == 0){
-                    constraints = doc.createElement("constraints");
-                    column.appendChild(constraints);
-                } else {
-                    constraints = (Element) nodes.item(0);
+            eventWriter.flush();
+        } finally {
+            eventWriter.close();
+            reader.close();
+        }
+
+        writer.write(FOOTER);
+        writer.flush();
+    }
+
+    /**
+     * Moves constraint attributes defined in the column to the child constraints element.
+     * Events until the end of the column are buffered to find an existing constraints element.
+     */
+    private static void writeColumn(StartElement column, XMLEventReader reader, XMLEventWriter writer) throws Exception {
+        Map<String, String> constraintsMap = new LinkedHashMap<>();
+        List<Attribute> columnAttributes = new ArrayList<>();
+        Iterator<?> iterator = column.getAttributes();
+        while(iterator.hasNext()){
+            Attribute attribute = (Attribute) iterator.next();
+            if(isConstraintProperty(attribute.getName())){
+                constraintsMap.put(attribute.getName().getLocalPart(), attribute.getValue());
+            } else {
+                columnAttributes.add(attribute);
+            }
+        }
+        if(constraintsMap.isEmpty()){
+            writer.add(column);
+            return;
+        }
+
+        writer.add(EVENT_FACTORY.createStartElement(column.getName(), columnAttributes.iterator(), column.getNamespaces()));
+
+        List<XMLEvent> children = new ArrayList<>();
+        int depth = 0;
+        boolean found = false;
+        while(reader.hasNext()){
+            XMLEvent event = reader.nextEvent();
+            if(event.isStartElement()){
+                depth++;
+                StartElement element = event.asStartElement();
+                if(!found && element.getName().getLocalPart().equals("constraints")){
+                    event = addAttributes(element, constraintsMap);
+                    found = true;
                 }
-                for(Map.Entry<String, String> entry: constraintsMap.entrySet()){
-                    String key = entry.getKey();
-                    String value = entry.getValue();
-                    if(!constraints.hasAttribute(key)){
-                        constraints.setAttribute(key, value);
+            } else if(event.isEndElement()){
+                if(depth == 0){
+                    if(!found){
+                        QName name = new QName(column.getName().getNamespaceURI(), "constraints", column.getName().getPrefix());
+                        children.add(addAttributes(EVENT_FACTORY.createStartElement(name, null, null), constraintsMap));
+                        children.add(EVENT_FACTORY.createEndElement(name, null));
                     }
+                    children.add(event);
+                    break;
                 }
+                depth--;
             }
+            children.add(event);
         }
 
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-                "\n" +
-                "<databaseChangeLog\n" +
-                "    xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n" +
-                "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
-                "    xmlns:ext=\"http://www.liquibase.org/xml/ns/dbchangelog-ext\"\n" +
-                "    xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-3.0.xsd\n" +
-                "        http://www.liquibase.org/xml/ns/dbchangelog-ext http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-ext.xsd\">\n" +
-                "\n" +
-                printXml(doc) + "\n" +
-                "</databaseChangeLog>\n";
+        for(XMLEvent event: children){
+            writer.add(event);
+        }
     }
 
-    private static Document parseXml(String xml) throws Exception {
-        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        Document doc = builder.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
-        return doc;
+    /**
+     * Returns the start element which has the given attributes in addition to its own.
+     * Attributes which have been defined in the element are not overwritten.
+     */
+    private static StartElement addAttributes(StartElement element, Map<String, String> attributes){
+        List<Attribute> result = new ArrayList<>();
+        Iterator<?> iterator = element.getAttributes();
+        while(iterator.hasNext()){
+            result.add((Attribute) iterator.next());
+        }
+        for(Map.Entry<String, String> entry: attributes.entrySet()){
+            if(element.getAttributeByName(new QName(entry.getKey())) == null){
+                result.add(EVENT_FACTORY.createAttribute(entry.getKey(), entry.getValue()));
+            }
+        }
+        return EVENT_FACTORY.createStartElement(element.getName(), result.iterator(), element.getNamespaces());
     }
 
-    private static String printXml(Document doc) throws Exception {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-        transformer.transform(new DOMSource(doc), new StreamResult(out));
+    private static boolean isConstraintProperty(QName name){
+        if(!name.getNamespaceURI().isEmpty()){
+            return false;
+        }
+        for(String constraintAttributeName: CONSTRAINT_PROPERTIES){
+            if(constraintAttributeName.equals(name.getLocalPart())){
+                return true;
+            }
+        }
+        return false;
+    }
 
-        return out.toString("UTF-8");
+    private static XMLInputFactory createInputFactory(){
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
     }
+
 }
@@ -0,0 +1,143 @@
+package io.github.gitbucket.solidbase.migration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves migration resources on the classpath through an index which is built once per class loader.
+ * <p>
+ * When the index of a class loader is built, all <code>META-INF/solidbase/resources.idx</code> files on the classpath are read.
+ * Each of them lists resource paths (one per line, relative to the root of the jar or directory containing it).
+ * Listed resources which actually exist are known to exist without probing the class loader, which speeds up
+ * {@link #findFirst(ClassLoader, List)}. URLs of resources are always resolved by the class loader and remembered once found,
+ * so a resource in an earlier jar takes precedence as well as <code>ClassLoader.getResource()</code>. Missing resources
+ * are looked up from the class loader every time.
+ * </p>
+ * <p>
+ * The index is generated at build time by listing migration files, for example:
+ * </p>
+ * <pre>
+ * # META-INF/solidbase/resources.idx
+ * gitbucket-core_4.0.0.xml
+ * gitbucket-core_4.1.0_h2.sql
+ * </pre>
+ */
+public class MigrationResourceIndex {
+
+    public static final String INDEX_PATH = "META-INF/solidbase/resources.idx";
+
+    private static final Map<ClassLoader, Index> INDEXES = new WeakHashMap<>();
+
+    /**
+     * Returns the URL of the resource, or <code>null</code> if it doesn't exist.
+     */
+    public static URL getResource(ClassLoader classLoader, String path){
+        // A miss isn't stored, so a resource which becomes available later is found
+        return getIndex(classLoader).resources.computeIfAbsent(path, classLoader::getResource);
+    }
+
+    /**
+     * Returns <code>true</code> if the resource exists. Resources listed in indexes are not looked up from the class loader.
+     */
+    public static boolean exists(ClassLoader classLoader, String path){
+        return getIndex(classLoader).listed.contains(path) || getResource(classLoader, path) != null;
+    }
+
+    /**
+     * Returns the first existing path in the given candidates, or <code>null</code> if none of them exist.
+     */
+    public static String findFirst(ClassLoader classLoader, List<String> paths){
+        for(String path: paths){
+            if(exists(classLoader, path)){
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens the resource, or returns <code>null</code> if it doesn't exist.
+     */
+    public static InputStream openStream(ClassLoader classLoader, String path) throws IOException {
+        URL url = getResource(classLoader, path);
+        if(url == null){
+            return null;
+        }
+        return url.openStream();
+    }
+
+    /**
+     * Discards the index of the given class loader.
+     */
+    public static void clear(ClassLoader classLoader){
+        synchronized (INDEXES) {
+            INDEXES.remove(classLoader);
+        }
+    }
+
+    private static Index getIndex(ClassLoader classLoader){
+        synchronized (INDEXES) {
+            Index index = INDEXES.get(classLoader);
+            if(index == null){
+                index = buildIndex(classLoader);
+                INDEXES.put(classLoader, index);
+            }
+            return index;
+        }
+    }
+
+    private static Index buildIndex(ClassLoader classLoader){
+        Index index = new Index();
+        try {
+            Enumeration<URL> indexFiles = classLoader.getResources(INDEX_PATH);
+            while(indexFiles.hasMoreElements()){
+                URL indexFile = indexFiles.nextElement();
+                String base = indexFile.toString();
+                base = base.substring(0, base.length() - INDEX_PATH.length());
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(indexFile.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while((line = reader.readLine()) != null){
+                        String path = line.trim();
+                        if(!path.isEmpty() && !path.startsWith("#") && !index.listed.contains(path) && exists(new URL(base + path))){
+                            index.listed.add(path);
+                        }
+                    }
+                }
+            }
+        } catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+        return index;
+    }
+
+    /**
+     * Checks that a resource listed in an index actually exists in the jar or directory.
+     */
+    private static boolean exists(URL url){
+        try {
+            url.openStream().close();
+            return true;
+        } catch(IOException ex){
+            return false;
+        }
+    }
+
+    private static class Index {
+        // resources listed in indexes which exist
+        private final Set<String> listed = ConcurrentHashMap.newKeySet();
+        // resources resolved by the class loader
+        private final Map<String, URL> resources = new ConcurrentHashMap<>();
+    }
+
+}
@@ -0,0 +1,250 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes parameterized SQL repeatedly in a custom {@link Migration}, reusing prepared statements for the same SQL.
+ * <p>
+ * Unlike {@link MigrationUtils#updateDatabase(Connection, String, Object...)} which prepares a statement for every call,
+ * prepared statements are cached by SQL text until the session is closed, so the database can reuse parsed statements
+ * and plans. Parameters are set in the same way as <code>MigrationUtils</code>, which supports <code>null</code>, numbers,
+ * strings, byte arrays and date/time values.
+ * </p>
+ * <pre>
+ * try (MigrationSession session = MigrationSession.fromContext(context)) {
+ *   for(Issue issue: issues){
+ *     session.addBatch("UPDATE ISSUE SET TITLE = ? WHERE ISSUE_ID = ?", issue.getTitle(), issue.getIssueId());
+ *   }
+ *   session.executeBatch();
+ * }
+ * </pre>
+ * <p>
+ * Batched statements are executed when the number of them for the same SQL reaches the batch size,
+ * when other SQL is executed by the session, or by {@link #executeBatch()}. Statements which are still in batches
+ * when the session is closed are discarded. A session is not thread-safe.
+ * </p>
+ */
+public class MigrationSession implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_STATEMENTS = 64;
+
+    private final Connection conn;
+    private final int batchSize;
+    private final int maxStatements;
+    private final CancellationToken cancellationToken;
+    // prepared statements in the order of use
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+    // statements which have pending batches in the order of addition
+    private final LinkedHashMap<String, Integer> batches = new LinkedHashMap<>();
+
+    /**
+     * @param conn the connection
+     * @param batchSize the maximum number of statements in a batch. 0 or 1 executes batched statements one by one.
+     */
+    public MigrationSession(Connection conn, int batchSize){
+        this(conn, batchSize, DEFAULT_MAX_STATEMENTS, null);
+    }
+
+    /**
+     * @param conn the connection
+     * @param batchSize the maximum number of statements in a batch. 0 or 1 executes batched statements one by one.
+     * @param maxStatements the maximum number of cached prepared statements. The least recently used one is closed when exceeded.
+     * @param cancellationToken the token which cancels running statements, or <code>null</code>
+     */
+    public MigrationSession(Connection conn, int batchSize, int maxStatements, CancellationToken cancellationToken){
+        this.conn = conn;
+        this.batchSize = batchSize;
+        this.maxStatements = Math.max(maxStatements, 1);
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Creates <code>MigrationSession</code> for the connection, the batch size and the cancellation token in the migration context.
+     * If the batch size isn't configured, 100 is used.
+     */
+    public static MigrationSession fromContext(Map<String, Object> context){
+        Integer batchSize = (Integer) context.get(Solidbase.BATCH_SIZE);
+        return new MigrationSession((Connection) context.get(Solidbase.CONNECTION),
+                batchSize == null || batchSize == 0 ? 100 : batchSize, DEFAULT_MAX_STATEMENTS, CancellationToken.fromContext(context));
+    }
+
+    /**
+     * Executes an update statement.
+     *
+     * @return the number of affected rows
+     */
+    public int update(String sql, Object... params) throws SQLException {
+        executeBatch();
+        PreparedStatement stmt = prepare(sql);
+        MigrationUtils.setParameters(stmt, params);
+        return stmt.executeUpdate();
+    }
+
+    /**
+     * Returns the first column of the first row as an integer, or <code>null</code> if there is no row.
+     */
+    public Integer selectInt(String sql, Object... params) throws SQLException {
+        return selectFirst(sql, params, rs -> {
+            int value = rs.getInt(1);
+            return rs.wasNull() ? null : value;
+        });
+    }
+
+    /**
+     * Returns the first column of the first row as a long, or <code>null</code> if there is no row.
+     */
+    public Long selectLong(String sql, Object... params) throws SQLException {
+        return selectFirst(sql, params, rs -> {
+            long value = rs.getLong(1);
+            return rs.wasNull() ? null : value;
+        });
+    }
+
+    /**
+     * Returns the first column of the first row as a string, or <code>null</code> if there is no row.
+     */
+    public String selectString(String sql, Object... params) throws SQLException {
+        return selectFirst(sql, params, rs -> rs.getString(1));
+    }
+
+    /**
+     * Returns all rows converted by the given mapper.
+     */
+    public <T> List<T> select(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        executeBatch();
+        PreparedStatement stmt = prepare(sql);
+        MigrationUtils.setParameters(stmt, params);
+        List<T> result = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while(rs.next()){
+                result.add(mapper.map(rs));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds an update statement to the batch of the SQL. The batch is executed when it reaches the batch size.
+     */
+    public void addBatch(String sql, Object... params) throws SQLException {
+        if(batchSize <= 1){
+            update(sql, params);
+            return;
+        }
+        // Keep the order of statements
+        if(!batches.isEmpty() && !batches.containsKey(sql)){
+            executeBatch();
+        }
+        PreparedStatement stmt = prepare(sql);
+        MigrationUtils.setParameters(stmt, params);
+        stmt.addBatch();
+        int count = batches.getOrDefault(sql, 0) + 1;
+        if(count >= batchSize){
+            batches.remove(sql);
+            stmt.executeBatch();
+        } else {
+            batches.put(sql, count);
+        }
+    }
+
+    /**
+     * Executes pending batches.
+     */
+    public void executeBatch() throws SQLException {
+        Iterator<String> iterator = batches.keySet().iterator();
+        while(iterator.hasNext()){
+            String sql = iterator.next();
+            iterator.remove();
+            statements.get(sql).executeBatch();
+        }
+    }
+
+    /**
+     * Closes all cached prepared statements. Pending batches are discarded.
+     */
+    @Override
+    public void close() throws SQLException {
+        batches.clear();
+        SQLException failure = null;
+        for(PreparedStatement stmt: statements.values()){
+            try {
+                closeStatement(stmt);
+            } catch(SQLException ex){
+                if(failure == null){
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        statements.clear();
+        if(failure != null){
+            throw failure;
+        }
+    }
+
+    private <T> T selectFirst(String sql, Object[] params, RowMapper<T> mapper) throws SQLException {
+        executeBatch();
+        PreparedStatement stmt = prepare(sql);
+        MigrationUtils.setParameters(stmt, params);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? mapper.map(rs) : null;
+        }
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        if(cancellationToken != null){
+            cancellationToken.throwIfCancelled();
+        }
+        PreparedStatement stmt = statements.get(sql);
+        if(stmt == null){
+            stmt = conn.prepareStatement(sql);
+            if(cancellationToken != null){
+                cancellationToken.register(stmt);
+            }
+            statements.put(sql, stmt);
+            evict();
+        }
+        return stmt;
+    }
+
+    /**
+     * Closes the least recently used statements which don't have pending batches.
+     */
+    private void evict() throws SQLException {
+        Iterator<Map.Entry<String, PreparedStatement>> iterator = statements.entrySet().iterator();
+        while(statements.size() > maxStatements && iterator.hasNext()){
+            Map.Entry<String, PreparedStatement> entry = iterator.next();
+            if(!batches.containsKey(entry.getKey())){
+                iterator.remove();
+                closeStatement(entry.getValue());
+            }
+        }
+    }
+
+    private void closeStatement(PreparedStatement stmt) throws SQLException {
+        if(cancellationToken != null){
+            cancellationToken.unregister(stmt);
+        }
+        stmt.close();
+    }
+
+    /**
+     * Converts the current row of a result set.
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+}
@@ -1,12 +1,28 @@
 package io.github.gitbucket.solidbase.migration;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.jar.JarEntry;
 
 /**
  * Provides convenience methods which are useful in migration processing.
@@ -46,16 +62,57 @@ public class MigrationUtils {
         }
     }
 
-    private static void setParameters(PreparedStatement stmt, Object... params) throws SQLException {
+    /**
+     * Sets parameters to the statement. <code>null</code>, numbers, strings, booleans, byte arrays and date/time values
+     * including <code>java.time</code> types are supported, and other values are set by <code>setObject</code>.
+     */
+    static void setParameters(PreparedStatement stmt, Object... params) throws SQLException {
         for(int i = 0; i < params.length; i++){
-            Object param = params[i];
-            if(param instanceof Integer){
-                stmt.setInt(i + 1, (Integer) param);
-            } else if(param instanceof String){
-                stmt.setString(i + 1, (String) param);
-            } else {
-                // TODO unsupported
-            }
+            setParameter(stmt, i + 1, params[i]);
+        }
+    }
+
+    private static void setParameter(PreparedStatement stmt, int index, Object param) throws SQLException {
+        if(param == null){
+            stmt.setNull(index, Types.NULL);
+        } else if(param instanceof Integer){
+            stmt.setInt(index, (Integer) param);
+        } else if(param instanceof String){
+            stmt.setString(index, (String) param);
+        } else if(param instanceof Long){
+            stmt.setLong(index, (Long) param);
+        } else if(param instanceof Short){
+            stmt.setShort(index, (Short) param);
+        } else if(param instanceof Byte){
+            stmt.setByte(index, (Byte) param);
+        } else if(param instanceof Boolean){
+            stmt.setBoolean(index, (Boolean) param);
+        } else if(param instanceof Double){
+            stmt.setDouble(index, (Double) param);
+        } else if(param instanceof Float){
+            stmt.setFloat(index, (Float) param);
+        } else if(param instanceof BigDecimal){
+            stmt.setBigDecimal(index, (BigDecimal) param);
+        } else if(param instanceof byte[]){
+            stmt.setBytes(index, (byte[]) param);
+        } else if(param instanceof Timestamp){
+            stmt.setTimestamp(index, (Timestamp) param);
+        } else if(param instanceof java.sql.Date){
+            stmt.setDate(index, (java.sql.Date) param);
+        } else if(param instanceof Time){
+            stmt.setTime(index, (Time) param);
+        } else if(param instanceof java.util.Date){
+            stmt.setTimestamp(index, new Timestamp(((java.util.Date) param).getTime()));
+        } else if(param instanceof LocalDateTime){
+            stmt.setTimestamp(index, Timestamp.valueOf((LocalDateTime) param));
+        } else if(param instanceof LocalDate){
+            stmt.setDate(index, java.sql.Date.valueOf((LocalDate) param));
+        } else if(param instanceof LocalTime){
+            stmt.setTime(index, Time.valueOf((LocalTime) param));
+        } else if(param instanceof Instant){
+            stmt.setTimestamp(index, Timestamp.from((Instant) param));
+        } else {
+            stmt.setObject(index, param);
         }
     }
 
@@ -77,7 +134,83 @@ public class MigrationUtils {
     }
 
     public static String readResourceAsString(ClassLoader cl, String path) throws IOException {
-        return readStreamAsString(cl.getResourceAsStream(path));
+        return readStreamAsString(MigrationResourceIndex.openStream(cl, path));
+    }
+
+    /**
+     * Returns the SHA-256 digest of the given string as a hex string.
+     */
+    public static String digest(String source){
+        return digest(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the SHA-256 digest of the given bytes as a hex string.
+     */
+    public static String digest(byte[] source){
+        MessageDigest digest = createDigest();
+        return toHex(digest.digest(source));
+    }
+
+    /**
+     * Returns the SHA-256 digest of the given resource as a hex string.
+     * The resource is streamed and not loaded into memory.
+     */
+    public static String digestResource(ClassLoader cl, String path) throws IOException {
+        InputStream in = MigrationResourceIndex.openStream(cl, path);
+        if(in == null){
+            throw new FileNotFoundException(path);
+        }
+        MessageDigest digest = createDigest();
+        try {
+            byte[] buf = new byte[1024 * 8];
+            int length;
+            while((length = in.read(buf)) != -1){
+                digest.update(buf, 0, length);
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns a digest which changes when the content of the given resource changes.
+     * <p>
+     * For resources in jar files, the CRC and the size recorded in the jar are used, so the content is not read.
+     * Otherwise, this is the same as {@link #digestResource(ClassLoader, String)}.
+     * </p>
+     */
+    public static String fingerprintResource(ClassLoader cl, String path) throws IOException {
+        URL url = MigrationResourceIndex.getResource(cl, path);
+        if(url == null){
+            throw new FileNotFoundException(path);
+        }
+        URLConnection conn = url.openConnection();
+        if(conn instanceof JarURLConnection){
+            JarEntry entry = ((JarURLConnection) conn).getJarEntry();
+            if(entry != null && entry.getCrc() != -1 && entry.getSize() != -1){
+                return digest(url + "\n" + entry.getCrc() + "\n" + entry.getSize());
+            }
+        }
+        return digestResource(cl, path);
+    }
+
+    private static MessageDigest createDigest(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException ex){
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] hash){
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for(byte b: hash){
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
     }
 
     public static void ignoreException(ThrowableRunnable f){
@@ -0,0 +1,153 @@
+package io.github.gitbucket.solidbase.migration;
+
+import liquibase.change.Change;
+import liquibase.change.core.AddColumnChange;
+import liquibase.change.core.AddForeignKeyConstraintChange;
+import liquibase.change.core.CreateIndexChange;
+import liquibase.change.core.CreateSequenceChange;
+import liquibase.change.core.CreateTableChange;
+import liquibase.change.core.CreateViewChange;
+import liquibase.change.core.DeleteDataChange;
+import liquibase.change.core.EmptyChange;
+import liquibase.change.core.InsertDataChange;
+import liquibase.change.core.LoadDataChange;
+import liquibase.change.core.OutputChange;
+import liquibase.change.core.TagDatabaseChange;
+import liquibase.change.core.UpdateDataChange;
+import liquibase.database.Database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites SQL statements generated from Liquibase changes into non-blocking forms of the database.
+ * <p>
+ * Supported changes are rewritten as follows. Statements which can't be executed without blocking writes to
+ * existing tables are kept as they are and collected as blocking statements.
+ * </p>
+ * <ul>
+ *   <li>PostgreSQL: <code>createIndex</code> is created <code>CONCURRENTLY</code> unless statements are executed in
+ *   a transaction, and <code>addForeignKeyConstraint</code>
+ *   is added <code>NOT VALID</code> and validated by a following statement. <code>addColumn</code> is online unless
+ *   it has a computed default value or a following statement such as <code>SET NOT NULL</code>.</li>
+ *   <li>MySQL and MariaDB: <code>createIndex</code> and <code>addColumn</code> are executed with
+ *   <code>ALGORITHM=INPLACE</code> and <code>LOCK=NONE</code>, so the database refuses them instead of locking the table
+ *   if they can't be executed online.</li>
+ * </ul>
+ */
+class OnlineDdlRewriter {
+
+    private static final Pattern CREATE_INDEX = Pattern.compile("^(\\s*CREATE\\s+(?:UNIQUE\\s+)?INDEX)\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ALTER_TABLE_ADD = Pattern.compile("^\\s*ALTER\\s+TABLE\\s+\\S+\\s+ADD\\s", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Changes which don't lock existing tables.
+     */
+    private static final List<Class<? extends Change>> NON_BLOCKING_CHANGES = Arrays.asList(
+            CreateTableChange.class, CreateSequenceChange.class, CreateViewChange.class,
+            InsertDataChange.class, UpdateDataChange.class, DeleteDataChange.class, LoadDataChange.class,
+            TagDatabaseChange.class, EmptyChange.class, OutputChange.class
+    );
+
+    private final Database database;
+    private final boolean transactional;
+    private final List<String> blockingStatements = new ArrayList<>();
+
+    OnlineDdlRewriter(Database database){
+        this(database, false);
+    }
+
+    /**
+     * @param database the database
+     * @param transactional true if statements are executed in a transaction which can't be committed,
+     *                      so <code>CREATE INDEX CONCURRENTLY</code> isn't available
+     */
+    OnlineDdlRewriter(Database database, boolean transactional){
+        this.database = database;
+        this.transactional = transactional;
+    }
+
+    /**
+     * Rewrites statements generated from the given change.
+     *
+     * @param change the change
+     * @param sqlList statements generated from the change
+     * @return rewritten statements
+     */
+    List<String> rewrite(Change change, List<String> sqlList){
+        if(NON_BLOCKING_CHANGES.contains(change.getClass())){
+            return sqlList;
+        }
+        switch(database.getShortName()){
+            case "postgresql":
+                return rewriteForPostgreSQL(change, sqlList);
+            case "mysql":
+            case "mariadb":
+                return rewriteForMySQL(change, sqlList);
+            default:
+                blockingStatements.addAll(sqlList);
+                return sqlList;
+        }
+    }
+
+    /**
+     * Returns statements which can't be executed online among statements passed to {@link #rewrite(Change, List)}.
+     */
+    List<String> getBlockingStatements(){
+        return Collections.unmodifiableList(blockingStatements);
+    }
+
+    private List<String> rewriteForPostgreSQL(Change change, List<String> sqlList){
+        List<String> result = new ArrayList<>();
+        for(String sql: sqlList){
+            Matcher matcher = CREATE_INDEX.matcher(sql);
+            if(change instanceof CreateIndexChange && !transactional && matcher.find()){
+                result.add(matcher.group(1) + " CONCURRENTLY " + sql.substring(matcher.end()));
+
+            } else if(change instanceof AddForeignKeyConstraintChange && sql.toUpperCase(Locale.ROOT).contains("FOREIGN KEY")){
+                AddForeignKeyConstraintChange fk = (AddForeignKeyConstraintChange) change;
+                result.add(sql + " NOT VALID");
+                result.add("ALTER TABLE " +
+                        database.escapeTableName(fk.getBaseTableCatalogName(), fk.getBaseTableSchemaName(), fk.getBaseTableName()) +
+                        " VALIDATE CONSTRAINT " + database.escapeConstraintName(fk.getConstraintName()));
+
+            } else if(change instanceof AddColumnChange && ALTER_TABLE_ADD.matcher(sql).find() && !hasComputedDefault((AddColumnChange) change)){
+                // Adding a column with a constant default doesn't rewrite the table since PostgreSQL 11
+                result.add(sql);
+
+            } else {
+                blockingStatements.add(sql);
+                result.add(sql);
+            }
+        }
+        return result;
+    }
+
+    private List<String> rewriteForMySQL(Change change, List<String> sqlList){
+        List<String> result = new ArrayList<>();
+        for(String sql: sqlList){
+            if(change instanceof CreateIndexChange && CREATE_INDEX.matcher(sql).find()){
+                result.add(sql + " ALGORITHM=INPLACE LOCK=NONE");
+
+            } else if(change instanceof AddColumnChange && ALTER_TABLE_ADD.matcher(sql).find()){
+                result.add(sql + ", ALGORITHM=INPLACE, LOCK=NONE");
+
+            } else {
+                // Foreign keys can't be added in place while foreign_key_checks is enabled
+                blockingStatements.add(sql);
+                result.add(sql);
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasComputedDefault(AddColumnChange change){
+        return change.getColumns().stream().anyMatch(column -> column.getDefaultValueComputed() != null);
+    }
+
+}
@@ -0,0 +1,20 @@
+package io.github.gitbucket.solidbase.migration;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Migration} which can tell SQL statements it will execute without executing them.
+ * <p>
+ * It's used by {@link io.github.gitbucket.solidbase.Solidbase#plan(java.sql.Connection, ClassLoader, liquibase.database.Database, io.github.gitbucket.solidbase.model.Module)}.
+ * </p>
+ */
+public interface PlannableMigration extends Migration {
+
+    /**
+     * Returns SQL statements which will be executed by {@link #migrate(String, String, Map)} with the same arguments.
+     * This method must not modify the database.
+     */
+    List<String> plan(String moduleId, String version, Map<String, Object> context) throws Exception;
+
+}
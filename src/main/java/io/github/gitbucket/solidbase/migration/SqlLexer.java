@@ -0,0 +1,499 @@
+package io.github.gitbucket.solidbase.migration;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits SQL scripts into statements without copying them.
+ * <p>
+ * The lexer scans a {@link CharSequence} such as <code>String</code> or {@link CharBuffer} and tells the range of each statement
+ * by {@link #getStart()} and {@link #getEnd()}, so the caller can execute or copy only what it needs:
+ * </p>
+ * <pre>
+ * SqlLexer lexer = new SqlLexer(script, SqlLexer.Dialect.forDatabase(database.getShortName()));
+ * while(lexer.next()){
+ *     execute(lexer.getStatement().toString());
+ * }
+ * </pre>
+ * <p>
+ * Delimiters in string literals, quoted identifiers, comments and dollar-quoted bodies don't terminate a statement.
+ * Whitespace and comments before and after statements are excluded from the ranges, except MySQL executable comments
+ * (<code>/*! ... *&#47;</code>) which are a part of statements. Supported syntax depends on {@link Dialect}.
+ * </p>
+ */
+public class SqlLexer {
+
+    private final Dialect dialect;
+    private CharSequence input;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private String delimiter;
+
+    private int start;
+    private int end;
+    private boolean terminated;
+
+    /**
+     * Creates <code>SqlLexer</code> for the whole input with the default dialect.
+     */
+    public SqlLexer(CharSequence input){
+        this(input, Dialect.DEFAULT);
+    }
+
+    /**
+     * Creates <code>SqlLexer</code> for the whole input.
+     */
+    public SqlLexer(CharSequence input, Dialect dialect){
+        this.dialect = dialect;
+        this.delimiter = dialect.getDelimiter();
+        reset(input, 0, input.length(), true);
+    }
+
+    /**
+     * Restarts scanning the given range of the input. The current delimiter changed by <code>DELIMITER</code> commands is kept.
+     *
+     * @param input the input
+     * @param from the start index of the range
+     * @param to the end index of the range
+     * @param endOfInput false if the range might be followed by more input. In this case, a statement which reaches
+     *                   the end of the range is not returned because it might continue.
+     */
+    public void reset(CharSequence input, int from, int to, boolean endOfInput){
+        this.input = input;
+        this.position = from;
+        this.limit = to;
+        this.endOfInput = endOfInput;
+        this.start = from;
+        this.end = from;
+        this.terminated = false;
+    }
+
+    /**
+     * Finds the next statement.
+     *
+     * @return true if a statement is found, false if there are no more statements in the range
+     */
+    public boolean next(){
+        while(true){
+            if(!skipWhitespaceAndComments()){
+                return false;
+            }
+            int statementStart = position;
+            int contentEnd = position;
+
+            while(position < limit){
+                char c = input.charAt(position);
+                if(startsWith(delimiter, position)){
+                    if(contentEnd > statementStart){
+                        return found(statementStart, contentEnd, position + delimiter.length());
+                    }
+                    position += delimiter.length();
+                    break;
+                } else if(dialect.goSeparator && (c == 'G' || c == 'g') && isLineStart(position, statementStart)){
+                    int lineEnd = matchGo(position);
+                    if(lineEnd == -2){
+                        position = statementStart;
+                        return false;
+                    } else if(lineEnd >= 0){
+                        if(contentEnd > statementStart){
+                            return found(statementStart, contentEnd, lineEnd);
+                        }
+                        position = lineEnd;
+                        break;
+                    }
+                    position++;
+                    contentEnd = position;
+                } else if(isLineComment(c, position)){
+                    position = skipLine(position);
+                } else if(c == '/' && peek(position + 1) == '*'){
+                    boolean executable = peek(position + 2) == '!';
+                    position = skipBlockComment(position);
+                    if(executable){
+                        contentEnd = position;
+                    }
+                } else if(c == '\'' || c == '"' || c == '`' || (c == '[' && dialect.brackets)){
+                    position = skipQuoted(position, c == '[' ? ']' : c);
+                    contentEnd = position;
+                } else if(c == '$' && dialect.dollarQuotes && !isPrecededByIdentifier(position, statementStart)){
+                    position = skipDollarQuoted(position);
+                    contentEnd = position;
+                } else if(Character.isWhitespace(c)){
+                    position++;
+                } else {
+                    position++;
+                    contentEnd = position;
+                }
+            }
+
+            if(position >= limit){
+                if(contentEnd > statementStart && endOfInput){
+                    start = statementStart;
+                    end = contentEnd;
+                    terminated = false;
+                    return true;
+                }
+                // The statement might continue in the following input
+                position = statementStart;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns the start index of the current statement.
+     */
+    public int getStart(){
+        return this.start;
+    }
+
+    /**
+     * Returns the end index (exclusive) of the current statement.
+     */
+    public int getEnd(){
+        return this.end;
+    }
+
+    /**
+     * Returns the current statement as a view of the input. Characters are not copied.
+     */
+    public CharSequence getStatement(){
+        return CharBuffer.wrap(input, start, end);
+    }
+
+    /**
+     * Returns the index where scanning of the next statement starts.
+     * If {@link #next()} returned false, it's the start of the incomplete statement.
+     */
+    public int getPosition(){
+        return this.position;
+    }
+
+    /**
+     * Returns whether the current statement is terminated by a delimiter rather than the end of input.
+     */
+    public boolean isTerminated(){
+        return this.terminated;
+    }
+
+    /**
+     * Returns the current delimiter.
+     */
+    public String getDelimiter(){
+        return this.delimiter;
+    }
+
+    /**
+     * Splits the given SQL into statements.
+     */
+    public static List<String> split(CharSequence sql, Dialect dialect){
+        List<String> result = new ArrayList<>();
+        SqlLexer lexer = new SqlLexer(sql, dialect);
+        while(lexer.next()){
+            result.add(sql.subSequence(lexer.getStart(), lexer.getEnd()).toString());
+        }
+        return result;
+    }
+
+    private boolean found(int statementStart, int contentEnd, int next){
+        start = statementStart;
+        end = contentEnd;
+        position = next;
+        terminated = true;
+        return true;
+    }
+
+    /**
+     * Skips whitespace, comments, empty statements and <code>DELIMITER</code> commands before a statement.
+     *
+     * @return false if the end of the range is reached
+     */
+    private boolean skipWhitespaceAndComments(){
+        while(position < limit){
+            char c = input.charAt(position);
+            if(Character.isWhitespace(c)){
+                position++;
+            } else if(isLineComment(c, position)){
+                int next = skipLine(position);
+                if(next >= limit && !endOfInput){
+                    return false;
+                }
+                position = next;
+            } else if(c == '/' && peek(position + 1) == '*' && peek(position + 2) != '!'){
+                int next = skipBlockComment(position);
+                if(next >= limit && !endOfInput){
+                    return false;
+                }
+                position = next;
+            } else if(startsWith(delimiter, position)){
+                position += delimiter.length();
+            } else if(dialect.delimiterCommand && (c == 'D' || c == 'd') && regionMatches("DELIMITER", position)
+                    && Character.isWhitespace(peek(position + 9))){
+                int lineEnd = skipLine(position);
+                if(lineEnd >= limit && !endOfInput){
+                    return false;
+                }
+                String newDelimiter = input.subSequence(position + 9, lineEnd).toString().trim();
+                if(!newDelimiter.isEmpty()){
+                    delimiter = newDelimiter;
+                }
+                position = lineEnd;
+            } else if(dialect.goSeparator && (c == 'G' || c == 'g') && matchGo(position) != -1){
+                int lineEnd = matchGo(position);
+                if(lineEnd == -2){
+                    return false;
+                }
+                position = lineEnd;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isLineComment(char c, int i){
+        return (c == '-' && peek(i + 1) == '-') || (c == '#' && dialect.hashComments);
+    }
+
+    /**
+     * Returns the index after the line break, or the end of the range.
+     */
+    private int skipLine(int i){
+        while(i < limit){
+            if(input.charAt(i++) == '\n'){
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private int skipBlockComment(int i){
+        i += 2;
+        while(i < limit){
+            if(input.charAt(i) == '*' && peek(i + 1) == '/'){
+                return i + 2;
+            }
+            i++;
+        }
+        return limit;
+    }
+
+    private int skipQuoted(int i, char quote){
+        i++;
+        while(i < limit){
+            char c = input.charAt(i++);
+            if(c == '\\' && dialect.backslashEscapes && quote != '`'){
+                i++;
+            } else if(c == quote){
+                // a doubled quote is an escaped quote, it's read as a closing quote followed by an opening quote
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private int skipDollarQuoted(int i){
+        int tagStart = i;
+        i++;
+        while(i < limit && (Character.isLetterOrDigit(input.charAt(i)) || input.charAt(i) == '_')){
+            i++;
+        }
+        if(i >= limit || input.charAt(i) != '$'){
+            // not a dollar quote such as a positional parameter $1
+            return i;
+        }
+        i++;
+        int tagLength = i - tagStart;
+        while(i < limit){
+            if(input.charAt(i) == '$' && i + tagLength <= limit && regionMatches(input, tagStart, i, tagLength)){
+                return i + tagLength;
+            }
+            i++;
+        }
+        return limit;
+    }
+
+    /**
+     * Checks whether the line at the given index is a <code>GO</code> batch separator.
+     *
+     * @return the index after the line, -1 if it's not a separator, or -2 if more input is required to decide
+     */
+    private int matchGo(int i){
+        if(!regionMatches("GO", i)){
+            return i + 2 > limit && !endOfInput ? -2 : -1;
+        }
+        i += 2;
+        // an optional count
+        while(i < limit && (Character.isDigit(input.charAt(i)) || input.charAt(i) == ' ' || input.charAt(i) == '\t' || input.charAt(i) == '\r')){
+            i++;
+        }
+        if(i >= limit){
+            return endOfInput ? limit : -2;
+        }
+        return input.charAt(i) == '\n' ? i + 1 : -1;
+    }
+
+    private boolean isLineStart(int i, int statementStart){
+        while(i > statementStart){
+            char c = input.charAt(--i);
+            if(c == '\n'){
+                return true;
+            } else if(c != ' ' && c != '\t'){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isPrecededByIdentifier(int i, int statementStart){
+        if(i <= statementStart){
+            return false;
+        }
+        char c = input.charAt(i - 1);
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private boolean startsWith(String s, int i){
+        if(i + s.length() > limit){
+            return false;
+        }
+        for(int j = 0; j < s.length(); j++){
+            if(input.charAt(i + j) != s.charAt(j)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the given keyword case-insensitively.
+     */
+    private boolean regionMatches(String keyword, int i){
+        if(i + keyword.length() > limit){
+            return false;
+        }
+        for(int j = 0; j < keyword.length(); j++){
+            if(Character.toUpperCase(input.charAt(i + j)) != keyword.charAt(j)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatches(CharSequence s, int i1, int i2, int length){
+        for(int j = 0; j < length; j++){
+            if(s.charAt(i1 + j) != s.charAt(i2 + j)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int peek(int i){
+        return i < limit ? input.charAt(i) : -1;
+    }
+
+    /**
+     * Syntax of SQL scripts understood by {@link SqlLexer}.
+     * <p>
+     * Single quotes, double quotes, backticks, <code>--</code> and <code>/* *&#47;</code> comments are supported by all dialects.
+     * Dialects are immutable, and <code>with</code> methods return a modified copy.
+     * </p>
+     */
+    public static final class Dialect {
+
+        /**
+         * Statements separated by semicolons, with PostgreSQL dollar quotes.
+         */
+        public static final Dialect DEFAULT = new Dialect(";", false, false, false, false, true, false);
+
+        /**
+         * MySQL and MariaDB: <code>DELIMITER</code> commands, <code>#</code> comments and backslash escapes in literals.
+         */
+        public static final Dialect MYSQL = new Dialect(";", true, false, true, true, false, false);
+
+        /**
+         * PostgreSQL: dollar-quoted bodies such as <code>$$ ... $$</code> and <code>$body$ ... $body$</code>.
+         */
+        public static final Dialect POSTGRESQL = new Dialect(";", false, false, false, false, true, false);
+
+        /**
+         * SQL Server: <code>GO</code> batch separators and bracketed identifiers in addition to semicolons.
+         */
+        public static final Dialect SQLSERVER = new Dialect(";", false, true, false, false, false, true);
+
+        private final String delimiter;
+        private final boolean delimiterCommand;
+        private final boolean goSeparator;
+        private final boolean hashComments;
+        private final boolean backslashEscapes;
+        private final boolean dollarQuotes;
+        private final boolean brackets;
+
+        private Dialect(String delimiter, boolean delimiterCommand, boolean goSeparator, boolean hashComments,
+                        boolean backslashEscapes, boolean dollarQuotes, boolean brackets){
+            if(delimiter == null || delimiter.isEmpty()){
+                throw new IllegalArgumentException("Delimiter must not be empty");
+            }
+            this.delimiter = delimiter;
+            this.delimiterCommand = delimiterCommand;
+            this.goSeparator = goSeparator;
+            this.hashComments = hashComments;
+            this.backslashEscapes = backslashEscapes;
+            this.dollarQuotes = dollarQuotes;
+            this.brackets = brackets;
+        }
+
+        /**
+         * Returns the dialect for the short name of Liquibase database.
+         */
+        public static Dialect forDatabase(String shortName){
+            switch(shortName){
+                case "mysql":
+                case "mariadb":
+                    return MYSQL;
+                case "postgresql":
+                    return POSTGRESQL;
+                case "mssql":
+                    return SQLSERVER;
+                default:
+                    return DEFAULT;
+            }
+        }
+
+        public String getDelimiter(){
+            return this.delimiter;
+        }
+
+        /**
+         * Returns a copy which uses the given statement delimiter initially.
+         */
+        public Dialect withDelimiter(String delimiter){
+            return new Dialect(delimiter, delimiterCommand, goSeparator, hashComments, backslashEscapes, dollarQuotes, brackets);
+        }
+
+        /**
+         * Returns a copy which supports (or doesn't support) <code>DELIMITER</code> commands which change the delimiter.
+         */
+        public Dialect withDelimiterCommand(boolean delimiterCommand){
+            return new Dialect(delimiter, delimiterCommand, goSeparator, hashComments, backslashEscapes, dollarQuotes, brackets);
+        }
+
+        /**
+         * Returns a copy which supports (or doesn't support) lines of <code>GO</code> as statement separators.
+         */
+        public Dialect withGoSeparator(boolean goSeparator){
+            return new Dialect(delimiter, delimiterCommand, goSeparator, hashComments, backslashEscapes, dollarQuotes, brackets);
+        }
+
+        /**
+         * Returns a copy which supports (or doesn't support) dollar-quoted bodies.
+         */
+        public Dialect withDollarQuotes(boolean dollarQuotes){
+            return new Dialect(delimiter, delimiterCommand, goSeparator, hashComments, backslashEscapes, dollarQuotes, brackets);
+        }
+
+    }
+
+}
@@ -1,19 +1,26 @@
 package io.github.gitbucket.solidbase.migration;
 
 import io.github.gitbucket.solidbase.Solidbase;
-import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
 import liquibase.database.Database;
 
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Provides database migration using a specified SQL file.
  */
-public class SqlMigration implements Migration {
+public class SqlMigration implements PlannableMigration, ChecksumMigration {
 
     private final String path;
 
@@ -44,7 +51,63 @@ public class SqlMigration implements Migration {
 
     protected void migrate(Connection conn, Database database, ClassLoader classLoader,
                            String moduleId, String version, Map<String, Object> context) throws Exception {
+        try (Reader reader = openReader(database, classLoader, moduleId, version)) {
+            StatementExecutor.fromContext(conn, context, moduleId, version).execute(readStatements(database, reader));
+        } catch(UncheckedIOException ex){
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public List<String> plan(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        Database db = (Database) context.get(Solidbase.DATABASE);
+
+        List<String> result = new ArrayList<>();
+        try (Reader reader = openReader(db, cl, moduleId, version)) {
+            readStatements(db, reader).forEachRemaining(result::add);
+        } catch(UncheckedIOException ex){
+            throw ex.getCause();
+        }
+        return result;
+    }
 
+    @Override
+    public String checksum(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        Database db = (Database) context.get(Solidbase.DATABASE);
+
+        return MigrationUtils.digestResource(cl, resolvePath(db, cl, moduleId, version));
+    }
+
+    @Override
+    public String fingerprint(String moduleId, String version, Map<String, Object> context) throws Exception {
+        ClassLoader cl = (ClassLoader) context.get(Solidbase.CLASSLOADER);
+        Database db = (Database) context.get(Solidbase.DATABASE);
+
+        return MigrationUtils.fingerprintResource(cl, resolvePath(db, cl, moduleId, version));
+    }
+
+    private Reader openReader(Database database, ClassLoader classLoader,
+                              String moduleId, String version) throws IOException {
+        InputStream in = MigrationResourceIndex.openStream(classLoader, resolvePath(database, classLoader, moduleId, version));
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Splits the SQL file into statements. They are read one by one by {@link SqlStatementReader} by default,
+     * so large files are executed with bounded memory. The reader is closed by the caller.
+     *
+     * @param database the database
+     * @param reader the reader of the SQL file
+     * @return statements, which may throw <code>UncheckedIOException</code> while reading
+     */
+    protected Iterator<String> readStatements(Database database, Reader reader){
+        return new SqlStatementReader(reader, SqlLexer.Dialect.forDatabase(database.getShortName()));
+    }
+
+    private String resolvePath(Database database, ClassLoader classLoader,
+                               String moduleId, String version) throws FileNotFoundException {
         List<String> fileNames = new ArrayList<>();
         if(this.path != null){
             if(this.path.endsWith(".sql")){
@@ -55,46 +118,21 @@ public class SqlMigration implements Migration {
         fileNames.add(moduleId + "_" + version + "_" + database.getShortName() + ".sql");
         fileNames.add(moduleId + "_" + version + ".sql");
 
-        String sql = null;
-        for(String fileName: fileNames){
-            sql = MigrationUtils.readResourceAsString(classLoader, fileName);
-            if(sql != null){
-                break;
-            }
-        }
-
-        if(sql == null){
+        String fileName = MigrationResourceIndex.findFirst(classLoader, fileNames);
+        if(fileName == null){
             throw new FileNotFoundException(fileNames.get(fileNames.size() - 1));
         }
-        for(String singleSql: splitMultiStatementSql(sql)){
-          updateDatabase(conn, singleSql);
-        }
+        return fileName;
     }
 
+    /**
+     * Splits SQL into statements.
+     *
+     * @deprecated This method is no longer used to execute SQL files. Override {@link #readStatements(Database, Reader)} instead.
+     */
+    @Deprecated
     protected List<String> splitMultiStatementSql(String sql){
-        List<String> result = new ArrayList<>();
-        boolean stringLiteral = false;
-        StringBuilder sb = new StringBuilder();
-        for(int i = 0; i < sql.length(); i++){
-            char c = sql.charAt(i);
-            if(c == '\''){
-                stringLiteral = !stringLiteral;
-            }
-            if(c == ';' && !stringLiteral){
-                String stmt = sb.toString().trim();
-                if(stmt.length() > 0){
-                    result.add(stmt);
-                }
-                sb.setLength(0);
-            } else {
-                sb.append(c);
-            }
-        }
-        String stmt = sb.toString().trim();
-        if(stmt.length() > 0){
-            result.add(stmt);
-        }
-        return result;
+        return SqlLexer.split(sql, SqlLexer.Dialect.DEFAULT);
     }
 
 }
@@ -0,0 +1,106 @@
+package io.github.gitbucket.solidbase.migration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads SQL statements from a {@link Reader} one by one using {@link SqlLexer}.
+ * <p>
+ * Only the statement being read is held in the buffer, so large scripts can be executed with bounded memory.
+ * Statements are split in the same way as {@link SqlLexer} with the given dialect.
+ * </p>
+ */
+public class SqlStatementReader implements Iterator<String>, Closeable {
+
+    private final Reader reader;
+    private final SqlLexer lexer;
+    private char[] buf = new char[1024 * 8];
+    private CharBuffer input = CharBuffer.wrap(buf);
+    private int start = 0;
+    private int limit = 0;
+    private boolean endOfInput = false;
+
+    private String next;
+
+    public SqlStatementReader(Reader reader){
+        this(reader, SqlLexer.Dialect.DEFAULT);
+    }
+
+    public SqlStatementReader(Reader reader, SqlLexer.Dialect dialect){
+        this.reader = reader;
+        this.lexer = new SqlLexer("", dialect);
+    }
+
+    @Override
+    public boolean hasNext(){
+        if(next == null){
+            try {
+                next = readStatement();
+            } catch(IOException ex){
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next(){
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        String result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads the next statement. Returns <code>null</code> at the end of the stream.
+     */
+    private String readStatement() throws IOException {
+        while(true){
+            lexer.reset(input, start, limit, endOfInput);
+            if(lexer.next()){
+                start = lexer.getPosition();
+                return new String(buf, lexer.getStart(), lexer.getEnd() - lexer.getStart());
+            }
+            start = lexer.getPosition();
+            if(endOfInput){
+                return null;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Reads more characters after the incomplete statement, growing the buffer if it's full.
+     */
+    private void fill() throws IOException {
+        if(start > 0){
+            System.arraycopy(buf, start, buf, 0, limit - start);
+            limit -= start;
+            start = 0;
+        }
+        if(limit == buf.length){
+            buf = Arrays.copyOf(buf, buf.length * 2);
+            input = CharBuffer.wrap(buf);
+        }
+        int length = reader.read(buf, limit, buf.length - limit);
+        if(length == -1){
+            endOfInput = true;
+        } else {
+            limit += length;
+        }
+    }
+
+}
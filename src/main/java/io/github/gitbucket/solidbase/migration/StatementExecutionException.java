@@ -0,0 +1,40 @@
+package io.github.gitbucket.solidbase.migration;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when a statement of a migration fails.
+ * <p>
+ * It keeps the SQL state and the vendor code of the original exception,
+ * and tells the position of the failed statement in the migration (starts with 1).
+ * </p>
+ */
+public class StatementExecutionException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statementIndex;
+    private final String sql;
+
+    public StatementExecutionException(int statementIndex, String sql, SQLException cause){
+        super("Failed to execute statement #" + statementIndex + ": " + sql + " (" + cause.getMessage() + ")",
+                cause.getSQLState(), cause.getErrorCode(), cause);
+        this.statementIndex = statementIndex;
+        this.sql = sql;
+    }
+
+    /**
+     * Returns the position of the failed statement in the migration (starts with 1).
+     */
+    public int getStatementIndex(){
+        return this.statementIndex;
+    }
+
+    /**
+     * Returns the failed statement.
+     */
+    public String getSql(){
+        return this.sql;
+    }
+
+}
@@ -0,0 +1,354 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import io.github.gitbucket.solidbase.listener.MigrationListener;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+
+/**
+ * Executes statements of a migration in order.
+ * <p>
+ * If the batch size is greater than 1, consecutive DML statements (INSERT, UPDATE, DELETE and so on)
+ * are sent to the database by JDBC batch. Other statements such as DDL flush the pending batch
+ * and are executed alone, so the order of statements is kept.
+ * </p>
+ * <p>
+ * If a {@link CancellationToken} is given, it's checked before each statement, and the running statement is cancelled
+ * when cancellation is requested.
+ * </p>
+ * <p>
+ * If online DDL is enabled, statements which can't be executed in a transaction block such as
+ * <code>CREATE INDEX CONCURRENTLY</code> commit the current transaction and are executed in auto-commit mode.
+ * In transactional execution, they fail instead because committing would break the rollback of the version.
+ * </p>
+ */
+public class StatementExecutor {
+
+    private static final String[] DML_KEYWORDS = {
+        "INSERT", "UPDATE", "DELETE", "MERGE", "REPLACE", "UPSERT"
+    };
+
+    private static final Pattern CONCURRENTLY = Pattern.compile(
+            "(CREATE\\s+(UNIQUE\\s+)?INDEX|DROP\\s+INDEX|REINDEX\\s+\\w+)\\s+CONCURRENTLY\\b", Pattern.CASE_INSENSITIVE);
+
+    private final Connection conn;
+    private final int batchSize;
+    private final MigrationListener listener;
+    private final String moduleId;
+    private final String version;
+    private CancellationToken cancellationToken;
+    private boolean onlineDdl;
+    private boolean transactional;
+
+    public StatementExecutor(Connection conn){
+        this(conn, 0);
+    }
+
+    /**
+     * @param conn the connection
+     * @param batchSize the maximum number of statements in a batch. 0 or 1 disables batching.
+     */
+    public StatementExecutor(Connection conn, int batchSize){
+        this(conn, batchSize, null, null, null);
+    }
+
+    /**
+     * @param conn the connection
+     * @param batchSize the maximum number of statements in a batch. 0 or 1 disables batching.
+     * @param listener the listener which receives statement events, or <code>null</code>
+     * @param moduleId the module id passed to the listener
+     * @param version the version passed to the listener
+     */
+    public StatementExecutor(Connection conn, int batchSize, MigrationListener listener, String moduleId, String version){
+        this.conn = conn;
+        this.batchSize = batchSize;
+        this.listener = listener;
+        this.moduleId = moduleId;
+        this.version = version;
+    }
+
+    /**
+     * Creates <code>StatementExecutor</code> for the given connection configured by the migration context.
+     */
+    public static StatementExecutor fromContext(Connection conn, Map<String, Object> context, String moduleId, String version){
+        Integer batchSize = (Integer) context.get(Solidbase.BATCH_SIZE);
+        MigrationListener listener = (MigrationListener) context.get(Solidbase.LISTENER);
+        return new StatementExecutor(conn, batchSize == null ? 0 : batchSize, listener, moduleId, version)
+                .withCancellationToken(CancellationToken.fromContext(context))
+                .withOnlineDdl(Boolean.TRUE.equals(context.get(Solidbase.ONLINE_DDL)))
+                .withTransactional(Boolean.TRUE.equals(context.get(Solidbase.TRANSACTION)));
+    }
+
+    /**
+     * Sets the token to cancel execution.
+     *
+     * @param cancellationToken the token, or <code>null</code> if execution isn't cancellable
+     * @return this executor
+     */
+    public StatementExecutor withCancellationToken(CancellationToken cancellationToken){
+        this.cancellationToken = cancellationToken;
+        return this;
+    }
+
+    /**
+     * Sets whether statements which can't be executed in a transaction block are executed in auto-commit mode.
+     *
+     * @param onlineDdl true to execute them in auto-commit mode (default is false)
+     * @return this executor
+     */
+    public StatementExecutor withOnlineDdl(boolean onlineDdl){
+        this.onlineDdl = onlineDdl;
+        return this;
+    }
+
+    /**
+     * Sets whether statements are executed in a transaction which must not be committed by this executor.
+     *
+     * @param transactional true if statements are executed in such a transaction (default is false)
+     * @return this executor
+     */
+    public StatementExecutor withTransactional(boolean transactional){
+        this.transactional = transactional;
+        return this;
+    }
+
+    public void execute(Iterable<String> statements) throws SQLException {
+        execute(statements.iterator());
+    }
+
+    public void execute(Iterator<String> statements) throws SQLException {
+        if(batchSize <= 1){
+            int index = 0;
+            while(statements.hasNext()){
+                String sql = statements.next();
+                index++;
+                throwIfCancelled(null);
+                long start = startStatement(sql);
+                try {
+                    int rowCount = isAutoCommitRequired(sql) ? executeInAutoCommit(sql) : executeUpdate(sql);
+                    endStatement(sql, start, rowCount, null);
+                } catch(SQLException ex){
+                    endStatement(sql, start, 0, ex);
+                    throwIfCancelled(ex);
+                    throw new StatementExecutionException(index, sql, ex);
+                }
+            }
+        } else {
+            try (Statement stmt = conn.createStatement()) {
+                if(cancellationToken == null){
+                    executeBatched(stmt, statements);
+                } else {
+                    cancellationToken.register(stmt);
+                    try {
+                        executeBatched(stmt, statements);
+                    } finally {
+                        cancellationToken.unregister(stmt);
+                    }
+                }
+            }
+        }
+    }
+
+    private void executeBatched(Statement stmt, Iterator<String> statements) throws SQLException {
+        List<String> batch = new ArrayList<>(batchSize);
+        int index = 0;
+        while(statements.hasNext()){
+            String sql = statements.next();
+            index++;
+            throwIfCancelled(null);
+            if(isDml(sql)){
+                stmt.addBatch(sql);
+                batch.add(sql);
+                if(batch.size() >= batchSize){
+                    executeBatch(stmt, batch, index - batch.size() + 1);
+                }
+            } else {
+                executeBatch(stmt, batch, index - batch.size());
+                long start = startStatement(sql);
+                try {
+                    if(isAutoCommitRequired(sql)){
+                        endStatement(sql, start, executeInAutoCommit(sql), null);
+                    } else {
+                        stmt.execute(sql);
+                        endStatement(sql, start, Math.max(stmt.getUpdateCount(), 0), null);
+                    }
+                } catch(SQLException ex){
+                    endStatement(sql, start, 0, ex);
+                    throwIfCancelled(ex);
+                    throw new StatementExecutionException(index, sql, ex);
+                }
+            }
+        }
+        executeBatch(stmt, batch, index - batch.size() + 1);
+    }
+
+    private void executeBatch(Statement stmt, List<String> batch, int firstIndex) throws SQLException {
+        if(batch.isEmpty()){
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int[] counts = stmt.executeBatch();
+            if(listener != null){
+                int rowCount = 0;
+                for(int count: counts){
+                    rowCount += Math.max(count, 0);
+                }
+                listener.onBatchEnd(moduleId, version, batch.size(), System.nanoTime() - start, rowCount, null);
+            }
+        } catch(BatchUpdateException ex){
+            if(listener != null){
+                listener.onBatchEnd(moduleId, version, batch.size(), System.nanoTime() - start, 0, ex);
+            }
+            throwIfCancelled(ex);
+            int failed = getFailedPosition(ex, batch.size());
+            throw new StatementExecutionException(firstIndex + failed, batch.get(failed), ex);
+        } finally {
+            stmt.clearBatch();
+            batch.clear();
+        }
+    }
+
+    /**
+     * Checks whether the statement is executed in auto-commit mode.
+     *
+     * @throws SQLException if the statement requires auto-commit mode in transactional execution
+     */
+    private boolean isAutoCommitRequired(String sql) throws SQLException {
+        if(!onlineDdl || !requiresAutoCommit(sql)){
+            return false;
+        }
+        if(transactional){
+            throw new SQLException("The statement can't be executed in transactional execution because it requires auto-commit mode");
+        }
+        return true;
+    }
+
+    /**
+     * Executes the statement in auto-commit mode. The current transaction is committed before it.
+     */
+    private int executeInAutoCommit(String sql) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        if(!autoCommit){
+            conn.setAutoCommit(true);
+        }
+        try {
+            return executeUpdate(sql);
+        } finally {
+            if(!autoCommit){
+                conn.setAutoCommit(false);
+            }
+        }
+    }
+
+    /**
+     * Executes the statement which is registered to the cancellation token while it's running.
+     */
+    private int executeUpdate(String sql) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if(cancellationToken == null){
+                return stmt.executeUpdate();
+            }
+            cancellationToken.register(stmt);
+            try {
+                return stmt.executeUpdate();
+            } finally {
+                cancellationToken.unregister(stmt);
+            }
+        }
+    }
+
+    /**
+     * Throws <code>CancellationException</code> if cancellation has been requested.
+     *
+     * @param cause the failure of the statement which might have been caused by {@link Statement#cancel()}, or <code>null</code>
+     */
+    private void throwIfCancelled(SQLException cause){
+        if(cancellationToken != null && cancellationToken.isCancelled()){
+            CancellationException ex = new CancellationException("Migration was cancelled");
+            ex.initCause(cause);
+            throw ex;
+        }
+    }
+
+    private long startStatement(String sql){
+        if(listener != null){
+            listener.onStatementStart(moduleId, version, sql);
+        }
+        return System.nanoTime();
+    }
+
+    private void endStatement(String sql, long start, int rowCount, Throwable failure){
+        if(listener != null){
+            listener.onStatementEnd(moduleId, version, sql, System.nanoTime() - start, rowCount, failure);
+        }
+    }
+
+    private static int getFailedPosition(BatchUpdateException ex, int size){
+        int[] counts = ex.getUpdateCounts();
+        if(counts == null){
+            return 0;
+        }
+        // Some drivers stop at the failed statement, others continue and mark it as EXECUTE_FAILED.
+        if(counts.length < size){
+            return counts.length;
+        }
+        for(int i = 0; i < counts.length; i++){
+            if(counts[i] == Statement.EXECUTE_FAILED){
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Checks whether the given statement is a DML statement which can be executed in a batch.
+     */
+    static boolean isDml(String sql){
+        int i = skipWhitespaceAndComments(sql, 0);
+        for(String keyword: DML_KEYWORDS){
+            if(sql.regionMatches(true, i, keyword, 0, keyword.length())){
+                int end = i + keyword.length();
+                return end == sql.length() || !Character.isLetterOrDigit(sql.charAt(end));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the given statement can't be executed in a transaction block
+     * such as <code>CREATE INDEX CONCURRENTLY</code> of PostgreSQL.
+     */
+    static boolean requiresAutoCommit(String sql){
+        return CONCURRENTLY.matcher(sql).region(skipWhitespaceAndComments(sql, 0), sql.length()).lookingAt();
+    }
+
+    private static int skipWhitespaceAndComments(String sql, int i){
+        while(i < sql.length()){
+            char c = sql.charAt(i);
+            if(Character.isWhitespace(c)){
+                i++;
+            } else if(sql.startsWith("--", i)){
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end + 1;
+            } else if(sql.startsWith("/*", i)){
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+}
@@ -0,0 +1,136 @@
+package io.github.gitbucket.solidbase.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The plan of migration of a module, which is computed without modifying the database.
+ *
+ * @see io.github.gitbucket.solidbase.Solidbase#plan(java.sql.Connection, ClassLoader, liquibase.database.Database, Module)
+ */
+public class MigrationPlan implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String moduleId;
+    private final String databaseName;
+    private final String currentVersion;
+    private final List<PlannedVersion> versions = new ArrayList<>();
+
+    public MigrationPlan(String moduleId, String databaseName, String currentVersion, List<PlannedVersion> versions){
+        this.moduleId = moduleId;
+        this.databaseName = databaseName;
+        this.currentVersion = currentVersion;
+        this.versions.addAll(versions);
+    }
+
+    public String getModuleId(){
+        return this.moduleId;
+    }
+
+    /**
+     * Returns the short name of the database which the plan was computed for.
+     */
+    public String getDatabaseName(){
+        return this.databaseName;
+    }
+
+    /**
+     * Returns the current version, or <code>null</code> if the module has not been migrated yet.
+     */
+    public String getCurrentVersion(){
+        return this.currentVersion;
+    }
+
+    /**
+     * Returns versions to be migrated in order.
+     */
+    public List<PlannedVersion> getVersions(){
+        return Collections.unmodifiableList(this.versions);
+    }
+
+    /**
+     * Returns true if there is nothing to migrate.
+     */
+    public boolean isEmpty(){
+        return this.versions.isEmpty();
+    }
+
+    /**
+     * Renders the plan as a SQL script. Migrations which can't be planned are rendered as comments.
+     */
+    public String toSql(){
+        StringBuilder sb = new StringBuilder();
+        for(PlannedVersion version: versions){
+            sb.append("-- ").append(moduleId).append(" ").append(version.getVersion()).append("\n");
+            for(PlannedMigration migration: version.getMigrations()){
+                if(migration.getStatements() == null){
+                    sb.append("-- ").append(migration.getMigrationClass()).append(" (not planned)\n");
+                } else {
+                    for(String statement: migration.getStatements()){
+                        sb.append(statement).append(";\n");
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A version in the plan.
+     */
+    public static class PlannedVersion implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String version;
+        private final List<PlannedMigration> migrations = new ArrayList<>();
+
+        public PlannedVersion(String version, List<PlannedMigration> migrations){
+            this.version = version;
+            this.migrations.addAll(migrations);
+        }
+
+        public String getVersion(){
+            return this.version;
+        }
+
+        public List<PlannedMigration> getMigrations(){
+            return Collections.unmodifiableList(this.migrations);
+        }
+    }
+
+    /**
+     * A migration in the plan.
+     */
+    public static class PlannedMigration implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String migrationClass;
+        private final List<String> statements;
+
+        public PlannedMigration(String migrationClass, List<String> statements){
+            this.migrationClass = migrationClass;
+            this.statements = statements == null ? null : new ArrayList<>(statements);
+        }
+
+        /**
+         * Returns the class name of the migration.
+         */
+        public String getMigrationClass(){
+            return this.migrationClass;
+        }
+
+        /**
+         * Returns SQL statements to be executed, or <code>null</code> if the migration doesn't support planning
+         * (e.g. <code>AntMigration</code> and custom migrations).
+         */
+        public List<String> getStatements(){
+            return this.statements == null ? null : Collections.unmodifiableList(this.statements);
+        }
+    }
+
+}
@@ -7,6 +7,8 @@ public class Module {
 
     private final String moduleId;
     private final List<Version> versions = new ArrayList<>();
+    private final List<String> dependencies = new ArrayList<>();
+    private Version baseline;
 
     public Module(String moduleId){
         this.moduleId = moduleId;
@@ -32,4 +34,60 @@ public class Module {
         return this.versions;
     }
 
+    /**
+     * Returns ids of modules which have to be migrated before this module.
+     */
+    public List<String> getDependencies(){
+        return this.dependencies;
+    }
+
+    /**
+     * Declares modules which have to be migrated before this module.
+     *
+     * @param moduleIds ids of modules this module depends on
+     * @return this module
+     */
+    public Module dependsOn(String... moduleIds){
+        for(String moduleId: moduleIds){
+            this.dependencies.add(moduleId);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the baseline which is applied instead of versions up to it on a fresh install,
+     * or <code>null</code> if the module doesn't have a baseline.
+     */
+    public Version getBaseline(){
+        return this.baseline;
+    }
+
+    /**
+     * Declares a baseline which creates the schema of the given version at once.
+     * <p>
+     * When the module has not been migrated yet, migrations of the baseline are executed instead of versions up to
+     * the version of the baseline, and only later versions are executed after it. Migrations of the baseline are
+     * typically a consolidated schema such as <code>new SqlMigration("gitbucket-core_4.30.0_baseline.sql")</code>,
+     * which is resolved for each database as <code>gitbucket-core_4.30.0_baseline_$DATABASE.sql</code> if it exists.
+     * </p>
+     *
+     * @param baseline the baseline whose version is one of versions of this module
+     * @return this module
+     * @throws IllegalArgumentException if this module doesn't have the version of the baseline
+     */
+    public Module withBaseline(Version baseline){
+        boolean exists = false;
+        for(Version version: this.versions){
+            if(version.getVersion().equals(baseline.getVersion())){
+                exists = true;
+                break;
+            }
+        }
+        if(!exists){
+            throw new IllegalArgumentException("Module " + moduleId + " doesn't have version " + baseline.getVersion());
+        }
+        this.baseline = baseline;
+        return this;
+    }
+
 }
@@ -1,9 +1,17 @@
 package io.github.gitbucket.solidbase;
 
+import io.github.gitbucket.solidbase.listener.MigrationRecorder;
 import io.github.gitbucket.solidbase.migration.AntMigration;
+import io.github.gitbucket.solidbase.migration.CancellationToken;
+import io.github.gitbucket.solidbase.migration.ChangeLogCache;
+import io.github.gitbucket.solidbase.migration.ChecksumMigration;
+import io.github.gitbucket.solidbase.migration.IndependentMigration;
 import io.github.gitbucket.solidbase.migration.LiquibaseMigration;
+import io.github.gitbucket.solidbase.migration.Migration;
+import io.github.gitbucket.solidbase.model.MigrationPlan;
 import io.github.gitbucket.solidbase.model.Module;
 import io.github.gitbucket.solidbase.model.Version;
+import liquibase.database.Database;
 import liquibase.database.core.H2Database;
 import liquibase.database.core.MySQLDatabase;
 import liquibase.database.core.PostgresDatabase;
@@ -12,11 +20,30 @@ import org.junit.Test;
 import org.testcontainers.containers.MySQLContainer;
 import org.testcontainers.containers.PostgreSQLContainer;
 
+import org.h2.jdbcx.JdbcDataSource;
+
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.Assert.*;
 import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
 
@@ -51,6 +78,570 @@ public class SolidbaseTest {
         }
     }
 
+    @Test
+    public void testPlan() throws Exception {
+        Module module = new Module(
+            "test",
+            new Version("1.0.0", new LiquibaseMigration(), new AntMigration("test-ant_1.0.0.xml"))
+        );
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:plan", "sa", "sa")) {
+            Solidbase solidbase = new Solidbase();
+            MigrationPlan plan = solidbase.plan(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+
+            assertNull(plan.getCurrentVersion());
+            assertEquals(1, plan.getVersions().size());
+            MigrationPlan.PlannedVersion version = plan.getVersions().get(0);
+            assertEquals("1.0.0", version.getVersion());
+            assertEquals(1, version.getMigrations().get(0).getStatements().size());
+            assertTrue(version.getMigrations().get(0).getStatements().get(0).startsWith("CREATE TABLE"));
+            assertNull(version.getMigrations().get(1).getStatements());
+
+            // Nothing is created
+            Integer count = selectIntFromDatabase(conn, "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME IN ('PERSON', 'VERSIONS')");
+            assertEquals(0, count.intValue());
+        }
+    }
+
+    @Test
+    public void testBaseline() throws Exception {
+        List<String> migrated = new ArrayList<>();
+        Module module = new Module("test",
+                new Version("1.0.0", (moduleId, version, context) -> migrated.add(version)),
+                new Version("1.0.1", (moduleId, version, context) -> migrated.add(version)),
+                new Version("1.0.2", (moduleId, version, context) -> migrated.add(version))
+        ).withBaseline(new Version("1.0.1", (moduleId, version, context) -> migrated.add("baseline")));
+
+        Solidbase solidbase = new Solidbase();
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:baseline", "sa", "sa")) {
+            MigrationPlan plan = solidbase.plan(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+            assertEquals(2, plan.getVersions().size());
+            assertEquals("1.0.1", plan.getVersions().get(0).getVersion());
+            assertEquals("1.0.2", plan.getVersions().get(1).getVersion());
+
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+            assertEquals(Arrays.asList("baseline", "1.0.2"), migrated);
+            assertEquals("1.0.2", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='test'"));
+        }
+
+        // The baseline is not used for an existing installation
+        migrated.clear();
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:baselineExisting", "sa", "sa")) {
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(),
+                    new Module("test", new Version("1.0.0", (moduleId, version, context) -> migrated.add(version))));
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+            assertEquals(Arrays.asList("1.0.0", "1.0.1", "1.0.2"), migrated);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownBaseline() throws Exception {
+        new Module("test", new Version("1.0.0")).withBaseline(new Version("2.0.0"));
+    }
+
+    @Test
+    public void testRecorder() throws Exception {
+        Module module = new Module("test", new Version("1.0.0", new LiquibaseMigration()));
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:recorder", "sa", "sa")) {
+            MigrationRecorder recorder = new MigrationRecorder(5);
+            Solidbase solidbase = new Solidbase();
+            solidbase.setListener(recorder);
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+
+            assertTrue(recorder.getModuleNanos().containsKey("test"));
+            assertTrue(recorder.getVersionNanos().containsKey("test:1.0.0"));
+            assertEquals(1, recorder.getStatementCount());
+            assertEquals(1, recorder.getSlowestStatements().size());
+            assertTrue(recorder.getSlowestStatements().get(0).getSql().startsWith("CREATE TABLE"));
+        }
+    }
+
+    @Test
+    public void testChangeLogCache() throws Exception {
+        AtomicInteger generated = new AtomicInteger();
+        Module module = new Module("test", new Version("1.0.0", new LiquibaseMigration(){
+            @Override
+            protected List<String> generateSql(Database database, ClassLoader classLoader, String moduleId, String version,
+                                               String path, String source, Map<String, Object> context) throws Exception {
+                generated.incrementAndGet();
+                return super.generateSql(database, classLoader, moduleId, version, path, source, context);
+            }
+        }));
+        Path directory = Files.createTempDirectory("solidbase-cache");
+        try {
+            ChangeLogCache cache = new ChangeLogCache(directory);
+            Solidbase solidbase = new Solidbase();
+            solidbase.setChangeLogCache(cache);
+
+            try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:cache1", "sa", "sa")) {
+                solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+            }
+            // Generated SQL and the preprocessed changelog
+            assertEquals(2, Files.list(directory).count());
+            assertEquals(1, generated.get());
+
+            // Read from the cache directory
+            cache.clear();
+            try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:cache2", "sa", "sa")) {
+                solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+
+                Integer count = selectIntFromDatabase(conn, "SELECT COUNT(*) FROM PERSON");
+                assertEquals(0, count.intValue());
+            }
+            // SQL was not generated again
+            assertEquals(1, generated.get());
+        } finally {
+            Files.list(directory).forEach(file -> ignoreException(() -> Files.delete(file)));
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testTransactional() throws Exception {
+        Module module = new Module("test",
+                new Version("1.0.0", (moduleId, version, context) -> {
+                    Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+                    updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY)");
+                    updateDatabase(conn, "INSERT INTO ITEM VALUES (1)");
+                }),
+                new Version("1.0.1", (moduleId, version, context) -> {
+                    Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+                    updateDatabase(conn, "INSERT INTO ITEM VALUES (2)");
+                }),
+                new Version("1.0.2", (moduleId, version, context) -> {
+                    Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+                    updateDatabase(conn, "CREATE TABLE TAG (ID INT PRIMARY KEY)");
+                    updateDatabase(conn, "ALTER TABLE ITEM ADD COLUMN NAME VARCHAR(10)");
+                    updateDatabase(conn, "INSERT INTO ITEM VALUES (3, 'item3')");
+                    updateDatabase(conn, "INSERT INTO ITEM VALUES (1, 'item1')");
+                }));
+
+        Path file = Files.createTempFile("solidbase-transactional", ".db");
+        try {
+            // SQLite rolls back DDL as well as DML
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+                Solidbase solidbase = new Solidbase();
+                solidbase.setTransactional(true);
+                solidbase.setVersionsPerTransaction(10);
+                try {
+                    solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new SQLiteDatabase(), module);
+                    fail();
+                } catch(SQLException ex){
+                    // expected
+                }
+            }
+
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+                assertEquals(2, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+                assertEquals("1.0.1", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='test'"));
+                assertFalse(conn.getMetaData().getTables(null, null, "TAG", null).next());
+                assertFalse(conn.getMetaData().getColumns(null, null, "ITEM", "NAME").next());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTransactionalFallback() throws Exception {
+        Module module = new Module("test",
+                new Version("1.0.0", (moduleId, version, context) -> {
+                    Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+                    updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY)");
+                }),
+                new Version("1.0.1", (moduleId, version, context) -> {
+                    Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+                    updateDatabase(conn, "CREATE TABLE TAG (ID INT PRIMARY KEY)");
+                    updateDatabase(conn, "INSERT INTO ITEM VALUES (1)");
+                    updateDatabase(conn, "INSERT INTO ITEM VALUES (1)");
+                }));
+
+        // H2 commits implicitly on DDL, so versions are not migrated in transactions
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:transactional_fallback;DB_CLOSE_DELAY=-1", "sa", "sa")) {
+            Solidbase solidbase = new Solidbase();
+            solidbase.setTransactional(true);
+            try {
+                solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+                fail();
+            } catch(SQLException ex){
+                // not rolled back to a savepoint
+                assertEquals(0, ex.getSuppressed().length);
+            }
+            assertEquals("1.0.0", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='test'"));
+        }
+    }
+
+    @Test
+    public void testMultipleModules() throws Exception {
+        List<String> migrated = new ArrayList<>();
+        Module core = new Module("core",
+                new Version("1.0.0", (moduleId, version, context) -> migrated.add(moduleId + ":" + version)),
+                new Version("1.0.1", (moduleId, version, context) -> migrated.add(moduleId + ":" + version)));
+        Module plugin = new Module("plugin",
+                new Version("1.0.0", (moduleId, version, context) -> migrated.add(moduleId + ":" + version))).dependsOn("core");
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:multiple", "sa", "sa")) {
+            updateDatabase(conn, "CREATE TABLE VERSIONS (MODULE_ID VARCHAR(100) NOT NULL PRIMARY KEY, VERSION VARCHAR(100) NOT NULL)");
+            updateDatabase(conn, "INSERT INTO VERSIONS (MODULE_ID, VERSION) VALUES ('core', '1.0.0')");
+
+            Solidbase solidbase = new Solidbase();
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), Arrays.asList(plugin, core));
+
+            assertEquals(Arrays.asList("core:1.0.1", "plugin:1.0.0"), migrated);
+            assertEquals("1.0.1", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='core'"));
+            assertEquals("1.0.0", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='plugin'"));
+        }
+    }
+
+    @Test
+    public void testParallelModules() throws Exception {
+        List<String> migrated = Collections.synchronizedList(new ArrayList<>());
+        Thread[] worker = new Thread[1];
+        Module core = new Module("core", new Version("1.0.0", (moduleId, version, context) -> {
+            migrated.add(moduleId);
+            worker[0] = Thread.currentThread();
+        }));
+        Module plugin1 = new Module("plugin1", new Version("1.0.0", (moduleId, version, context) -> migrated.add(moduleId))).dependsOn("core");
+        Module plugin2 = new Module("plugin2", new Version("1.0.0", (moduleId, version, context) -> migrated.add(moduleId))).dependsOn("core");
+        Module plugin3 = new Module("plugin3", new Version("1.0.0", (moduleId, version, context) -> migrated.add(moduleId))).dependsOn("plugin1", "plugin2");
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:parallel;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+
+        Solidbase solidbase = new Solidbase();
+        solidbase.migrate(dataSource, Thread.currentThread().getContextClassLoader(), H2Database::new,
+                Arrays.asList(plugin3, plugin1, plugin2, core), 4);
+
+        assertEquals(4, migrated.size());
+        assertEquals("core", migrated.get(0));
+        assertEquals("plugin3", migrated.get(3));
+        // Workers don't keep the JVM alive
+        assertTrue(worker[0].getName().startsWith("solidbase-module-"));
+        assertTrue(worker[0].isDaemon());
+
+        try (Connection conn = dataSource.getConnection()) {
+            Integer count = selectIntFromDatabase(conn, "SELECT COUNT(*) FROM VERSIONS WHERE VERSION = '1.0.0'");
+            assertEquals(4, count.intValue());
+        }
+    }
+
+    @Test
+    public void testParallelModulesWithChecksums() throws Exception {
+        List<Module> modules = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            modules.add(new Module("module" + i, new Version("1.0.0", (moduleId, version, context) -> {})));
+        }
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:parallel_checksums;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+
+        // Tables for checksums are created before workers start
+        Solidbase solidbase = new Solidbase();
+        solidbase.setChecksumEnabled(true);
+        solidbase.migrate(dataSource, Thread.currentThread().getContextClassLoader(), H2Database::new, modules, 4);
+
+        try (Connection conn = dataSource.getConnection()) {
+            assertEquals(4, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM VERSIONS WHERE CHECKSUM IS NOT NULL").intValue());
+            assertEquals(4, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM VERSION_CHECKSUMS").intValue());
+        }
+    }
+
+    @Test
+    public void testMigrateTenants() throws Exception {
+        Module module = new Module("test", new Version("1.0.0", new LiquibaseMigration()));
+
+        Solidbase solidbase = new Solidbase();
+        List<TenantMigrationResult> results = solidbase.migrateTenants(Arrays.asList("tenant1", "tenant2", "tenant3"),
+                tenantId -> {
+                    if(tenantId.equals("tenant3")){
+                        throw new IllegalStateException("unavailable");
+                    }
+                    return DriverManager.getConnection("jdbc:h2:mem:" + tenantId + ";DB_CLOSE_DELAY=-1", "sa", "sa");
+                },
+                Thread.currentThread().getContextClassLoader(), H2Database::new, module, 2);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertEquals("unavailable", results.get(2).getFailure().getMessage());
+
+        for(String tenantId: Arrays.asList("tenant1", "tenant2")){
+            try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:" + tenantId, "sa", "sa")) {
+                String version = selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='test'");
+                assertEquals("1.0.0", version);
+            }
+        }
+    }
+
+    @Test
+    public void testMigrateTenantSchemas() throws Exception {
+        Module module = new Module("test", new Version("1.0.0", new LiquibaseMigration()));
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:tenant_schemas;DB_CLOSE_DELAY=-1", "sa", "sa")) {
+            updateDatabase(conn, "CREATE SCHEMA T1");
+            updateDatabase(conn, "CREATE SCHEMA T2");
+
+            Solidbase solidbase = new Solidbase();
+            // Tenants are migrated one by one to share generated SQL
+            List<TenantMigrationResult> results = solidbase.migrateTenants(Arrays.asList("T1", "T2"),
+                    tenantId -> DriverManager.getConnection("jdbc:h2:mem:tenant_schemas;SCHEMA=" + tenantId, "sa", "sa"),
+                    Thread.currentThread().getContextClassLoader(), H2Database::new, module, 1);
+
+            for(TenantMigrationResult result: results){
+                assertNull(result.getFailure());
+            }
+            for(String tenantId: Arrays.asList("T1", "T2")){
+                assertEquals("1.0.0", selectStringFromDatabase(conn, "SELECT VERSION FROM " + tenantId + ".VERSIONS WHERE MODULE_ID='test'"));
+                assertEquals(Integer.valueOf(0), selectIntFromDatabase(conn, "SELECT COUNT(*) FROM " + tenantId + ".PERSON"));
+            }
+        }
+    }
+
+    @Test
+    public void testIndependentMigrations() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<Connection> connections = Collections.synchronizedList(new ArrayList<>());
+        Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+        Migration createIndex = (moduleId, version, context) -> {
+            Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+            connections.add(conn);
+            threadNames.add(Thread.currentThread().getName());
+            // Fails unless both migrations run at the same time
+            barrier.await(10, TimeUnit.SECONDS);
+            String table = connections.indexOf(conn) == 1 ? "ISSUE" : "COMMENT";
+            updateDatabase(conn, "CREATE INDEX IDX_" + table + " ON " + table + " (ID)");
+        };
+        Module module = new Module("test", new Version("1.0.0",
+                (moduleId, version, context) -> {
+                    Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+                    connections.add(conn);
+                    updateDatabase(conn, "CREATE TABLE ISSUE (ID INT)");
+                    updateDatabase(conn, "CREATE TABLE COMMENT (ID INT)");
+                },
+                new IndependentMigration(createIndex),
+                new IndependentMigration(createIndex)),
+                new Version("1.0.1",
+                        new IndependentMigration((moduleId, version, context) -> threadNames.add(Thread.currentThread().getName())),
+                        new IndependentMigration((moduleId, version, context) -> threadNames.add(Thread.currentThread().getName()))));
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:independent;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+
+        new Solidbase().migrate(dataSource, Thread.currentThread().getContextClassLoader(), H2Database::new, module);
+
+        assertEquals(3, new HashSet<>(connections).size());
+        // Both versions run on the same pool, which numbers its threads through
+        assertEquals(4, threadNames.size());
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("solidbase-migration-")));
+        try (Connection conn = dataSource.getConnection()) {
+            assertEquals("1.0.1", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='test'"));
+            Integer count = selectIntFromDatabase(conn,
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME IN ('IDX_ISSUE', 'IDX_COMMENT')");
+            assertEquals(2, count.intValue());
+        }
+    }
+
+    @Test
+    public void testMigrateAsync() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> migrated = Collections.synchronizedList(new ArrayList<>());
+        Module module = new Module("test",
+                new Version("1.0.0", (moduleId, version, context) -> migrated.add(version)),
+                new Version("1.0.1", (moduleId, version, context) -> {
+                    started.countDown();
+                    // Runs until cancelled
+                    CancellationToken token = CancellationToken.fromContext(context);
+                    while(!token.isCancelled()){
+                        Thread.sleep(10);
+                    }
+                    token.throwIfCancelled();
+                }),
+                new Version("1.0.2", (moduleId, version, context) -> migrated.add(version)));
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:async;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MigrationFuture future = new Solidbase().migrateAsync(dataSource, Thread.currentThread().getContextClassLoader(),
+                    H2Database::new, Collections.singletonList(module), executor);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals("test", future.getCurrentModuleId());
+            assertEquals("1.0.1", future.getCurrentVersion());
+            assertEquals(1, future.getCompletedVersions());
+
+            future.cancelAfter(100, TimeUnit.MILLISECONDS);
+            try {
+                future.get();
+                fail();
+            } catch(ExecutionException ex){
+                assertTrue(ex.getCause() instanceof TimeoutException);
+            }
+            future.whenTerminated().get(10, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonList("1.0.0"), migrated);
+
+            try (Connection conn = dataSource.getConnection()) {
+                assertEquals("1.0.0", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='test'"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCircularModules() throws Exception {
+        Module module1 = new Module("module1").dependsOn("module2");
+        Module module2 = new Module("module2").dependsOn("module1");
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:circular");
+
+        new Solidbase().migrate(dataSource, Thread.currentThread().getContextClassLoader(), H2Database::new,
+                Arrays.asList(module1, module2), 2);
+    }
+
+    @Test
+    public void testChecksum() throws Exception {
+        TestChecksumMigration migration = new TestChecksumMigration();
+        Module module = new Module("test", new Version("1.0.0", new LiquibaseMigration()), new Version("1.0.1", migration));
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:checksum", "sa", "sa")) {
+            Solidbase solidbase = new Solidbase();
+            solidbase.setChecksumEnabled(true);
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+            assertEquals(1, migration.count);
+
+            assertNotNull(selectStringFromDatabase(conn, "SELECT CHECKSUM FROM VERSIONS WHERE MODULE_ID='test'"));
+            Integer count = selectIntFromDatabase(conn, "SELECT COUNT(*) FROM VERSION_CHECKSUMS WHERE MODULE_ID='test'");
+            assertEquals(2, count.intValue());
+
+            // Fingerprint matches, so checksums aren't computed
+            migration.checksumCount = 0;
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+            assertEquals(1, migration.count);
+            assertEquals(0, migration.checksumCount);
+
+            // Applied migration is modified
+            migration.checksum = "modified";
+            try {
+                solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+                fail();
+            } catch(ChecksumMismatchException ex){
+                assertEquals("1.0.1", ex.getVersion());
+            }
+            assertEquals(1, migration.count);
+        }
+    }
+
+    @Test
+    public void testLock() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        Module module = new Module("test", new Version("1.0.0", (moduleId, version, context) -> {
+            count.incrementAndGet();
+            Thread.sleep(200);
+        }));
+
+        // Nodes start at the same time
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int i = 0; i < 3; i++){
+                futures.add(executor.submit(() -> {
+                    try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:migrationLock;DB_CLOSE_DELAY=-1", "sa", "sa")) {
+                        Solidbase solidbase = new Solidbase();
+                        solidbase.setLockEnabled(true);
+                        solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> future: futures){
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testLockWithChecksums() throws Exception {
+        Module module = new Module("test", new Version("1.0.0", (moduleId, version, context) -> {
+            Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+            updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY)");
+        }));
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:checksumLock", "sa", "sa")) {
+            Solidbase solidbase = new Solidbase();
+            solidbase.setLockEnabled(true);
+            solidbase.setChecksumEnabled(true);
+            solidbase.setLockTimeoutMillis(100);
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+
+            // The up to date module doesn't wait for the lock held by another process
+            updateDatabase(conn, "INSERT INTO SOLIDBASE_LOCK (LOCK_NAME, LOCKED_AT) VALUES (?, ?)", "solidbase", System.currentTimeMillis());
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+            assertEquals("1.0.0", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='test'"));
+        }
+    }
+
+    @Test
+    public void testLockWithFailure() throws Exception {
+        Module module = new Module("test", new Version("1.0.0", (moduleId, version, context) -> {
+            Connection conn = (Connection) context.get(Solidbase.CONNECTION);
+            updateDatabase(conn, "INSERT INTO ITEM VALUES (1)");
+            updateDatabase(conn, "INSERT INTO ITEM VALUES (1)");
+        }));
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:failureLock", "sa", "sa")) {
+            updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY)");
+            conn.setAutoCommit(false);
+
+            Solidbase solidbase = new Solidbase();
+            solidbase.setLockEnabled(true);
+            try {
+                solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(), module);
+                fail();
+            } catch(SQLException ex){
+                // Releasing the lock doesn't commit the failed version
+                assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+                assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM SOLIDBASE_LOCK").intValue());
+            }
+        }
+    }
+
+    private static class TestChecksumMigration implements ChecksumMigration {
+        private String checksum = "original";
+        private int count = 0;
+        private int checksumCount = 0;
+
+        @Override
+        public void migrate(String moduleId, String version, Map<String, Object> context){
+            count++;
+        }
+
+        @Override
+        public String checksum(String moduleId, String version, Map<String, Object> context){
+            checksumCount++;
+            return checksum;
+        }
+
+        @Override
+        public String fingerprint(String moduleId, String version, Map<String, Object> context){
+            return "fingerprint:" + checksum;
+        }
+    }
+
     @Test
     public void testWithSQLite() throws Exception {
         Module module = new Module(
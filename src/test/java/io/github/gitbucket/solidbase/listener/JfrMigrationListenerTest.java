@@ -0,0 +1,50 @@
+package io.github.gitbucket.solidbase.listener;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+public class JfrMigrationListenerTest {
+
+    @Test
+    public void testStatementThreshold() throws Exception {
+        JfrMigrationListener listener = new JfrMigrationListener();
+        Path file = Files.createTempFile("solidbase", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("solidbase.Statement").withThreshold(Duration.ofMillis(10));
+                recording.start();
+
+                // Faster than the threshold
+                listener.onStatementStart("test", "1.0.0", "SELECT 1");
+                listener.onStatementEnd("test", "1.0.0", "SELECT 1", 0, 0, null);
+
+                listener.onStatementStart("test", "1.0.0", "UPDATE ITEM SET FLG = 1");
+                Thread.sleep(50);
+                listener.onStatementEnd("test", "1.0.0", "UPDATE ITEM SET FLG = 1", 0, 3, null);
+
+                recording.stop();
+                recording.dump(file);
+            }
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            assertEquals("test", event.getString("moduleId"));
+            assertEquals("1.0.0", event.getString("version"));
+            assertEquals("UPDATE ITEM SET FLG = 1", event.getString("sql"));
+            assertEquals(3, event.getInt("rowCount"));
+            assertEquals(23, event.getInt("bytes"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package io.github.gitbucket.solidbase.listener;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MigrationRecorderTest {
+
+    @Test
+    public void testSlowestStatements(){
+        MigrationRecorder recorder = new MigrationRecorder(2);
+        recorder.onStatementEnd("test", "1.0.0", "SQL1", 30, 1, null);
+        recorder.onStatementEnd("test", "1.0.0", "SQL2", 10, 1, null);
+        recorder.onStatementEnd("test", "1.0.0", "SQL3", 20, 1, null);
+
+        assertEquals(3, recorder.getStatementCount());
+        assertEquals(2, recorder.getSlowestStatements().size());
+        assertEquals("SQL1", recorder.getSlowestStatements().get(0).getSql());
+        assertEquals("SQL3", recorder.getSlowestStatements().get(1).getSql());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxStatements(){
+        new MigrationRecorder(0);
+    }
+
+}
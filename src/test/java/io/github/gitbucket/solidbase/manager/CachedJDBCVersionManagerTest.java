@@ -0,0 +1,33 @@
+package io.github.gitbucket.solidbase.manager;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+public class CachedJDBCVersionManagerTest {
+
+    @Test
+    public void testLookupWithoutInitialization() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:cachedVersions", "sa", "sa")) {
+            JDBCVersionManager versionManager = new JDBCVersionManager(conn);
+            assertFalse(versionManager.isInitialized());
+            versionManager.initialize();
+            versionManager.initializeChecksums();
+            versionManager.updateVersion("test", "1.0.0");
+            versionManager.updateFingerprint("test", "fingerprint");
+
+            // Snapshots are loaded at the first lookup as Solidbase#plan doesn't initialize the manager
+            CachedJDBCVersionManager cachedVersionManager = new CachedJDBCVersionManager(conn);
+            assertTrue(cachedVersionManager.isInitialized());
+            assertEquals("1.0.0", cachedVersionManager.getCurrentVersion("test"));
+            assertNull(cachedVersionManager.getCurrentVersion("other"));
+            assertEquals("fingerprint", cachedVersionManager.getFingerprint("test"));
+
+            cachedVersionManager.updateVersion("test", "1.0.1");
+            assertEquals("1.0.1", versionManager.getCurrentVersion("test"));
+        }
+    }
+
+}
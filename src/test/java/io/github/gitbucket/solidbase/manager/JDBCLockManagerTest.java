@@ -0,0 +1,96 @@
+package io.github.gitbucket.solidbase.manager;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class JDBCLockManagerTest {
+
+    @Test
+    public void testLockTable() throws Exception {
+        try (Connection conn1 = DriverManager.getConnection("jdbc:h2:mem:lock;DB_CLOSE_DELAY=-1", "sa", "sa");
+             Connection conn2 = DriverManager.getConnection("jdbc:h2:mem:lock", "sa", "sa")) {
+            JDBCLockManager lockManager1 = new JDBCLockManager(conn1);
+            JDBCLockManager lockManager2 = new JDBCLockManager(conn2);
+
+            lockManager1.lock("test", 1000);
+            try {
+                lockManager2.lock("test", 200);
+                fail();
+            } catch(TimeoutException ex){
+                // expected
+            }
+            // Other locks are not affected
+            lockManager2.lock("test2", 200);
+            lockManager2.unlock("test2");
+
+            lockManager1.unlock("test");
+            lockManager2.lock("test", 200);
+            lockManager2.unlock("test");
+        }
+    }
+
+    @Test
+    public void testLockTableWithSQLite() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            new JDBCLockManager(conn).lock("test", 1000);
+            try {
+                // SQLite reports the duplicate lock without SQLState
+                new JDBCLockManager(conn).lock("test", 200);
+                fail();
+            } catch(TimeoutException ex){
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testStaleLock() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:staleLock", "sa", "sa")) {
+            JDBCLockManager lockManager1 = new JDBCLockManager(conn);
+            lockManager1.lock("test", 1000);
+            lockManager1.unlock("test");
+
+            // Left by a crashed process
+            updateDatabase(conn, "INSERT INTO SOLIDBASE_LOCK (LOCK_NAME, LOCKED_AT) VALUES (?, ?)",
+                    "test", System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+            lockManager1.lock("test", 200);
+
+            // Taken over by another process after it expired
+            Thread.sleep(10);
+            JDBCLockManager lockManager2 = new JDBCLockManager(conn, 5);
+            lockManager2.lock("test", 200);
+            lockManager1.unlock("test");
+            try {
+                new JDBCLockManager(conn).lock("test", 200);
+                fail();
+            } catch(TimeoutException ex){
+                // expected
+            }
+            lockManager2.unlock("test");
+            assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM SOLIDBASE_LOCK").intValue());
+        }
+    }
+
+    @Test
+    public void testLockTableError() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:lockError", "sa", "sa")) {
+            updateDatabase(conn, "CREATE TABLE SOLIDBASE_LOCK (LOCK_NAME VARCHAR(100) NOT NULL PRIMARY KEY)");
+            try {
+                // Not regarded as the lock held by another process
+                new JDBCLockManager(conn).lock("test", TimeUnit.MINUTES.toMillis(10));
+                fail();
+            } catch(SQLException ex){
+                // expected
+            }
+        }
+    }
+
+}
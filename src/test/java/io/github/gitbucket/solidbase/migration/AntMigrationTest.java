@@ -0,0 +1,51 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class AntMigrationTest {
+
+    @Test
+    public void testBuildFileInJar() throws Exception {
+        Path directory = Files.createTempDirectory("solidbase-ant");
+        // Surefire sets the basedir property which isn't set in applications
+        String basedir = System.getProperty("basedir");
+        System.clearProperty("basedir");
+        try {
+            Path created = directory.resolve("created");
+            Path jar = directory.resolve("migration.jar");
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                out.putNextEntry(new JarEntry("update/test_1.0.0.xml"));
+                out.write(("<project default=\"test\"><target name=\"test\"><mkdir dir=\"" + created + "\"/></target></project>")
+                        .getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+
+            try (URLClassLoader cl = new URLClassLoader(new URL[]{ jar.toUri().toURL() }, null)) {
+                Map<String, Object> context = new HashMap<>();
+                context.put(Solidbase.CLASSLOADER, cl);
+                new AntMigration("update/test_1.0.0.xml").migrate("test", "1.0.0", context);
+            }
+            assertTrue(Files.isDirectory(created));
+        } finally {
+            if(basedir != null){
+                System.setProperty("basedir", basedir);
+            }
+            Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(path -> ignoreException(() -> Files.delete(path)));
+        }
+    }
+
+}
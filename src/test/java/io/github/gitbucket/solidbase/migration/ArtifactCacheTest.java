@@ -0,0 +1,70 @@
+package io.github.gitbucket.solidbase.migration;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+import static org.junit.Assert.*;
+
+public class ArtifactCacheTest {
+
+    @Test
+    public void testGetAndPut() throws Exception {
+        Path directory = Files.createTempDirectory("solidbase-artifact");
+        try {
+            ArtifactCache cache = new ArtifactCache(directory);
+            assertNull(cache.get("key1"));
+
+            cache.put("key1", "value1".getBytes(StandardCharsets.UTF_8));
+            assertEquals("value1", toString(cache.get("key1")));
+
+            // Reused by another instance
+            ArtifactCache cache2 = new ArtifactCache(directory);
+            assertEquals("value1", toString(cache2.get("key1")));
+            assertEquals(6, cache2.getSize());
+        } finally {
+            Files.list(directory).forEach(file -> ignoreException(() -> Files.delete(file)));
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        Path directory = Files.createTempDirectory("solidbase-artifact");
+        try {
+            ArtifactCache cache = new ArtifactCache(directory, 10);
+            cache.put("key1", new byte[4]);
+            cache.put("key2", new byte[4]);
+            // key2 becomes the least recently used
+            assertNotNull(cache.get("key1"));
+
+            cache.put("key3", new byte[4]);
+            assertNotNull(cache.get("key1"));
+            assertNull(cache.get("key2"));
+            assertNotNull(cache.get("key3"));
+            assertEquals(8, cache.getSize());
+            assertEquals(2, Files.list(directory).count());
+
+            // The order of use is restored from last modified time of files
+            Files.list(directory).forEach(file -> ignoreException(() -> Files.setLastModifiedTime(file, FileTime.fromMillis(0))));
+            cache.get("key3");
+            ArtifactCache cache2 = new ArtifactCache(directory, 10);
+            cache2.put("key4", new byte[4]);
+            assertNull(cache2.get("key1"));
+            assertNotNull(cache2.get("key3"));
+        } finally {
+            Files.list(directory).forEach(file -> ignoreException(() -> Files.delete(file)));
+            Files.delete(directory);
+        }
+    }
+
+    private static String toString(ByteBuffer buffer){
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+}
@@ -0,0 +1,125 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+import static org.junit.Assert.*;
+
+public class ChangeLogPrecompilerTest {
+
+    @Test
+    public void testPrecompile() throws Exception {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        assertEquals("solidbase-precompiled/db/test_1.0.0_h2.sql", ChangeLogPrecompiler.getPrecompiledPath("/db/test_1.0.0.xml", "h2"));
+
+        String script = new ChangeLogPrecompiler(cl).precompile("test_1.0.0.xml", "h2");
+        assertTrue(script.startsWith("-- solidbase:source " + digestResource(cl, "test_1.0.0.xml") + "\n" +
+                "-- solidbase:schema PUBLIC\n-- solidbase:version 999.999\n"));
+        // The default schema isn't written
+        assertTrue(script.contains("CREATE TABLE person"));
+        assertFalse(script.contains("PUBLIC."));
+
+        Path directory = Files.createTempDirectory("solidbase-precompiled");
+        try {
+            Path file = directory.resolve(ChangeLogPrecompiler.getPrecompiledPath("test_1.0.0.xml", "h2"));
+            Files.createDirectories(file.getParent());
+            Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+
+            try (URLClassLoader precompiled = new URLClassLoader(new URL[]{ directory.toUri().toURL() }, cl)) {
+                List<String> sqlList = ChangeLogPrecompiler.loadPrecompiled(precompiled, "test_1.0.0.xml", openDatabase(precompiled, "h2"));
+                assertEquals(SqlLexer.split(script, SqlLexer.Dialect.forDatabase("h2")), sqlList);
+                assertNull(ChangeLogPrecompiler.loadPrecompiled(precompiled, "test_1.0.0.xml", openDatabase(precompiled, "mysql")));
+            }
+
+            // LiquibaseMigration executes the precompiled script instead of the changelog
+            Files.write(file, script.replace("person", "people").getBytes(StandardCharsets.UTF_8));
+            try (URLClassLoader precompiled = new URLClassLoader(new URL[]{ directory.toUri().toURL() }, cl)) {
+                assertTrue(plan(precompiled, openDatabase(precompiled, "h2")).get(0).contains("CREATE TABLE people"));
+
+                // Ignored for another default schema
+                Database database = openDatabase(precompiled, "h2");
+                database.setDefaultSchemaName("TENANT1");
+                assertTrue(plan(precompiled, database).get(0).contains("CREATE TABLE TENANT1.person"));
+
+                // Ignored for an older version than the script was compiled for
+                assertTrue(plan(precompiled, openDatabase(precompiled, "h2?version=2.2")).get(0).contains("CREATE TABLE PUBLIC.person"));
+            }
+
+            // Used for the same or a later version
+            Files.write(file, new ChangeLogPrecompiler(cl).precompile("test_1.0.0.xml", "h2", "2.1")
+                    .replace("person", "people").getBytes(StandardCharsets.UTF_8));
+            try (URLClassLoader precompiled = new URLClassLoader(new URL[]{ directory.toUri().toURL() }, cl)) {
+                assertTrue(plan(precompiled, openDatabase(precompiled, "h2?version=2.1")).get(0).contains("CREATE TABLE people"));
+                assertTrue(plan(precompiled, openDatabase(precompiled, "h2?version=2.2")).get(0).contains("CREATE TABLE people"));
+                assertTrue(plan(precompiled, openDatabase(precompiled, "h2?version=1.4")).get(0).contains("CREATE TABLE PUBLIC.person"));
+            }
+
+            // Ignored if the changelog has been modified
+            Files.write(file, script.replace(digestResource(cl, "test_1.0.0.xml"), "stale").getBytes(StandardCharsets.UTF_8));
+            try (URLClassLoader precompiled = new URLClassLoader(new URL[]{ directory.toUri().toURL() }, cl)) {
+                assertNull(ChangeLogPrecompiler.loadPrecompiled(precompiled, "test_1.0.0.xml", openDatabase(precompiled, "h2")));
+            }
+        } finally {
+            Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(path -> ignoreException(() -> Files.delete(path)));
+        }
+    }
+
+    @Test
+    public void testPrecompiledInJar() throws Exception {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        String script = new ChangeLogPrecompiler(cl).precompile("test_1.0.0.xml", "h2");
+
+        Path jar = Files.createTempFile("solidbase-precompiled", ".jar");
+        try {
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                out.putNextEntry(new JarEntry("test_1.0.0.xml"));
+                out.write(readResourceAsString(cl, "test_1.0.0.xml").getBytes(StandardCharsets.UTF_8));
+                out.putNextEntry(new JarEntry(ChangeLogPrecompiler.getPrecompiledPath("test_1.0.0.xml", "h2")));
+                out.write(script.getBytes(StandardCharsets.UTF_8));
+            }
+
+            // The changelog is validated by its digest remembered for the CRC in the jar
+            try (URLClassLoader precompiled = new URLClassLoader(new URL[]{ jar.toUri().toURL() }, null)) {
+                List<String> expected = SqlLexer.split(script, SqlLexer.Dialect.forDatabase("h2"));
+                assertEquals(expected, ChangeLogPrecompiler.loadPrecompiled(precompiled, "test_1.0.0.xml", openDatabase(precompiled, "h2")));
+                assertEquals(expected, ChangeLogPrecompiler.loadPrecompiled(precompiled, "test_1.0.0.xml", openDatabase(precompiled, "h2")));
+            }
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    private static Database openDatabase(ClassLoader cl, String databaseName) throws Exception {
+        return DatabaseFactory.getInstance().openDatabase("offline:" + databaseName, null, null, null,
+                new ClassLoaderResourceAccessor(cl));
+    }
+
+    private static List<String> plan(ClassLoader cl, Database database) throws Exception {
+        Map<String, Object> context = new HashMap<>();
+        context.put(Solidbase.CLASSLOADER, cl);
+        context.put(Solidbase.DATABASE, database);
+        try {
+            return new LiquibaseMigration().plan("test", "1.0.0", context);
+        } finally {
+            database.close();
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import io.github.gitbucket.solidbase.listener.MigrationListener;
+import io.github.gitbucket.solidbase.listener.MigrationRecorder;
+import io.github.gitbucket.solidbase.manager.JDBCProgressManager;
+import io.github.gitbucket.solidbase.model.Module;
+import io.github.gitbucket.solidbase.model.Version;
+import liquibase.database.core.H2Database;
+import liquibase.database.core.SQLiteDatabase;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ChunkedMigrationTest {
+
+    private static final String SQL = "UPDATE ITEM SET FLG = 1 WHERE ID >= ? AND ID < ?";
+
+    @Test
+    public void testChunks() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:chunked1", "sa", "sa")) {
+            createItems(conn, 25);
+
+            MigrationRecorder recorder = new MigrationRecorder();
+            Solidbase solidbase = new Solidbase();
+            solidbase.setListener(recorder);
+            solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(),
+                    new Module("test", new Version("1.0.0", new ChunkedMigration("ITEM", "ID", SQL).withChunkSize(10))));
+
+            assertEquals(25, selectIntFromDatabase(conn, "SELECT SUM(FLG) FROM ITEM").intValue());
+            assertEquals(3, recorder.getStatementCount());
+            assertEquals(25, recorder.getRowCount());
+            // Progress is removed after completion
+            assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM MIGRATION_PROGRESS").intValue());
+        }
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:chunked2", "sa", "sa")) {
+            createItems(conn, 25);
+
+            ChunkedMigration first = new ChunkedMigration("ITEM", "ID", SQL).withChunkSize(10);
+            ChunkedMigration second = new ChunkedMigration("ITEM", "ID", "UPDATE ITEM SET FLG = FLG + 1 WHERE ID >= ? AND ID < ?");
+
+            // Chunks before ID 11 have been completed by the first migration, and the second migration has progress of its own
+            JDBCProgressManager progressManager = new JDBCProgressManager(conn);
+            progressManager.initialize();
+            progressManager.updateNextKey("test", "1.0.0", "ITEM", first.checksum("test", "1.0.0", null), 11);
+            progressManager.updateNextKey("test", "1.0.0", "ITEM", second.checksum("test", "1.0.0", null), 21);
+
+            new Solidbase().migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(),
+                    new Module("test", new Version("1.0.0", first, second)));
+
+            assertEquals(0, selectIntFromDatabase(conn, "SELECT SUM(FLG) FROM ITEM WHERE ID < 11").intValue());
+            assertEquals(10, selectIntFromDatabase(conn, "SELECT SUM(FLG) FROM ITEM WHERE ID >= 11 AND ID < 21").intValue());
+            assertEquals(10, selectIntFromDatabase(conn, "SELECT SUM(FLG) FROM ITEM WHERE ID >= 21").intValue());
+            assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM MIGRATION_PROGRESS").intValue());
+        }
+    }
+
+    @Test
+    public void testMaximumKey() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:chunked3", "sa", "sa")) {
+            updateDatabase(conn, "CREATE TABLE ITEM (ID BIGINT PRIMARY KEY, FLG INT DEFAULT 0 NOT NULL)");
+            for(long i = Long.MAX_VALUE - 5; i < Long.MAX_VALUE; i++){
+                updateDatabase(conn, "INSERT INTO ITEM (ID) VALUES (?)", i);
+            }
+
+            // The key range doesn't overflow
+            new Solidbase().migrate(conn, Thread.currentThread().getContextClassLoader(), new H2Database(),
+                    new Module("test", new Version("1.0.0", new ChunkedMigration("ITEM", "ID", SQL).withChunkSize(10))));
+
+            assertEquals(5, selectIntFromDatabase(conn, "SELECT SUM(FLG) FROM ITEM").intValue());
+        }
+    }
+
+    @Test
+    public void testAutoCommit() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:chunked4", "sa", "sa")) {
+            createItems(conn, 25);
+
+            // Fails after the second chunk is updated but before its progress is recorded
+            int[] chunks = new int[1];
+            MigrationListener listener = new MigrationListener() {
+                @Override
+                public void onStatementEnd(String moduleId, String version, String sql, long elapsedNanos, int rowCount, Throwable failure){
+                    if(++chunks[0] == 2){
+                        throw new IllegalStateException("crash");
+                    }
+                }
+            };
+            Map<String, Object> context = new HashMap<>();
+            context.put(Solidbase.CONNECTION, conn);
+            context.put(Solidbase.LISTENER, listener);
+
+            try {
+                new ChunkedMigration("ITEM", "ID", SQL).withChunkSize(10).migrate("test", "1.0.0", context);
+                fail();
+            } catch(IllegalStateException ex){
+                assertEquals("crash", ex.getMessage());
+            }
+
+            // The second chunk is rolled back with its progress, and auto-commit mode is restored
+            assertTrue(conn.getAutoCommit());
+            assertEquals(10, selectIntFromDatabase(conn, "SELECT SUM(FLG) FROM ITEM").intValue());
+            assertEquals(11, selectIntFromDatabase(conn, "SELECT NEXT_KEY FROM MIGRATION_PROGRESS").intValue());
+        }
+    }
+
+    @Test
+    public void testTransactional() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            Solidbase solidbase = new Solidbase();
+            solidbase.setTransactional(true);
+            try {
+                solidbase.migrate(conn, Thread.currentThread().getContextClassLoader(), new SQLiteDatabase(),
+                        new Module("test",
+                                new Version("1.0.0", (moduleId, version, context) -> createItems(conn, 25)),
+                                new Version("1.0.1", new ChunkedMigration("ITEM", "ID", SQL))));
+                fail();
+            } catch(IllegalStateException ex){
+                // Chunks can't be committed in the transaction of the version
+                assertEquals("1.0.0", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID = 'test'"));
+                assertEquals(0, selectIntFromDatabase(conn, "SELECT SUM(FLG) FROM ITEM").intValue());
+            }
+        }
+    }
+
+    private static void createItems(Connection conn, int count) throws Exception {
+        updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY, FLG INT DEFAULT 0 NOT NULL)");
+        for(int i = 1; i <= count; i++){
+            updateDatabase(conn, "INSERT INTO ITEM (ID) VALUES (?)", i);
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package io.github.gitbucket.solidbase.migration;
+
+import io.github.gitbucket.solidbase.Solidbase;
+import io.github.gitbucket.solidbase.model.Module;
+import io.github.gitbucket.solidbase.model.Version;
+import liquibase.database.Database;
+import liquibase.database.core.H2Database;
+import liquibase.database.core.HsqlDatabase;
+import liquibase.database.core.MySQLDatabase;
+import liquibase.database.core.PostgresDatabase;
+import liquibase.database.core.SQLiteDatabase;
+import org.junit.Assume;
+import org.junit.Test;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import static org.junit.Assert.*;
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+public class CsvMigrationTest {
+
+    @Test
+    public void testWithH2() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:csv", "sa", "sa")) {
+            migrate(conn, new H2Database());
+        }
+    }
+
+    @Test
+    public void testWithSQLite() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            migrate(conn, new SQLiteDatabase());
+        }
+    }
+
+    @Test
+    public void testWithPostgreSQL() throws Exception {
+        Assume.assumeTrue(DockerClientFactory.instance().isDockerAvailable());
+        try (PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:11")) {
+            container.start();
+            try (Connection conn = DriverManager.getConnection(container.getJdbcUrl(), container.getUsername(), container.getPassword())) {
+                migrate(conn, new PostgresDatabase());
+            }
+        }
+    }
+
+    @Test
+    public void testWithMySQL() throws Exception {
+        Assume.assumeTrue(DockerClientFactory.instance().isDockerAvailable());
+        try (MySQLContainer<?> container = new MySQLContainer<>("mysql:8").withCommand("--local-infile=1")) {
+            container.start();
+            // LOAD DATA LOCAL INFILE
+            try (Connection conn = DriverManager.getConnection(container.getJdbcUrl() + "?allowLoadLocalInfile=true",
+                    container.getUsername(), container.getPassword())) {
+                migrate(conn, new MySQLDatabase());
+
+                // Duplicate keys are not skipped silently
+                Module module = new Module("test-csv", new Version("1.0.1", new CsvMigration("ITEM", "test-csv_1.0.0_ITEM.csv")));
+                try {
+                    new Solidbase().migrate(conn, Thread.currentThread().getContextClassLoader(), new MySQLDatabase(), module);
+                    fail();
+                } catch(SQLException ex){
+                    // expected
+                }
+                assertEquals("1.0.0", selectStringFromDatabase(conn, "SELECT VERSION FROM VERSIONS WHERE MODULE_ID='test-csv'"));
+            }
+            // Falls back to batched inserts if local infile is disabled
+            try (Connection conn = DriverManager.getConnection(container.getJdbcUrl(), "root", container.getPassword())) {
+                updateDatabase(conn, "CREATE DATABASE fallback");
+            }
+            try (Connection conn = DriverManager.getConnection(container.getJdbcUrl().replace("/test", "/fallback"),
+                    "root", container.getPassword())) {
+                migrate(conn, new MySQLDatabase());
+            }
+        }
+    }
+
+    @Test
+    public void testTypedColumns() throws Exception {
+        // HSQLDB isn't loaded natively, so rows are inserted by prepared statements
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:csvTypes", "sa", "sa")) {
+            updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY, AMOUNT DECIMAL(10, 2), CREATED DATE, ACTIVE BOOLEAN)");
+            new CsvMigration("ITEM", "test-csv-types.csv").migrate("test", "1.0.0", createContext(conn, new HsqlDatabase(), null));
+
+            assertEquals(2, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+            assertEquals(1, selectIntFromDatabase(conn,
+                    "SELECT COUNT(*) FROM ITEM WHERE AMOUNT = 12.5 AND CREATED = DATE '2024-01-02' AND ACTIVE = TRUE").intValue());
+            assertEquals(1, selectIntFromDatabase(conn,
+                    "SELECT COUNT(*) FROM ITEM WHERE ID = 2 AND AMOUNT IS NULL AND CREATED IS NULL AND ACTIVE IS NULL").intValue());
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY, NAME VARCHAR(10), MEMO VARCHAR(20))");
+            CancellationToken cancellationToken = new CancellationToken();
+            cancellationToken.cancel();
+            try {
+                new CsvMigration("ITEM").migrate("test-csv", "1.0.0", createContext(conn, new SQLiteDatabase(), cancellationToken));
+                fail();
+            } catch(CancellationException ex){
+                assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+            }
+        }
+    }
+
+    private static Map<String, Object> createContext(Connection conn, Database database, CancellationToken cancellationToken){
+        Map<String, Object> context = new HashMap<>();
+        context.put(Solidbase.CONNECTION, conn);
+        context.put(Solidbase.CLASSLOADER, Thread.currentThread().getContextClassLoader());
+        context.put(Solidbase.DATABASE, database);
+        context.put(Solidbase.CANCELLATION_TOKEN, cancellationToken);
+        return context;
+    }
+
+    private void migrate(Connection conn, Database database) throws Exception {
+        Module module = new Module("test-csv", new Version("1.0.0",
+                (moduleId, version, context) -> updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY, NAME VARCHAR(10), MEMO VARCHAR(20))"),
+                (moduleId, version, context) -> updateDatabase(conn, "CREATE TABLE ITEM2 (ID INT PRIMARY KEY, NAME VARCHAR(10), MEMO VARCHAR(20))"),
+                new CsvMigration("ITEM"),
+                new CsvMigration("ITEM2", "test-tsv.tsv")));
+
+        new Solidbase().migrate(conn, Thread.currentThread().getContextClassLoader(), database, module);
+
+        assertEquals(3, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+        assertEquals("hello, world", selectStringFromDatabase(conn, "SELECT MEMO FROM ITEM WHERE ID = 1"));
+        assertNull(selectStringFromDatabase(conn, "SELECT MEMO FROM ITEM WHERE ID = 2"));
+        assertEquals("c\"arol", selectStringFromDatabase(conn, "SELECT NAME FROM ITEM WHERE ID = 3"));
+        assertEquals("multi\nline", selectStringFromDatabase(conn, "SELECT MEMO FROM ITEM WHERE ID = 3"));
+
+        assertEquals(2, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM2").intValue());
+        assertEquals("hello", selectStringFromDatabase(conn, "SELECT MEMO FROM ITEM2 WHERE ID = 1"));
+        assertNull(selectStringFromDatabase(conn, "SELECT MEMO FROM ITEM2 WHERE ID = 2"));
+    }
+
+}
@@ -0,0 +1,62 @@
+package io.github.gitbucket.solidbase.migration;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.*;
+
+public class LiquibaseXmlPreProcessorTest {
+
+    @Test
+    public void testPreProcess() throws Exception {
+        String source = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<changeSet id=\"custom\">\n" +
+                "    <createTable tableName=\"person\">\n" +
+                "        <column name=\"id\" type=\"int\" primaryKey=\"true\" nullable=\"false\"/>\n" +
+                "        <column name=\"name\" type=\"varchar(50)\" nullable=\"false\" unique=\"true\">\n" +
+                "            <constraints unique=\"false\"/>\n" +
+                "        </column>\n" +
+                "        <column name=\"state\" type=\"char(2)\" defaultValue=\"&lt;none&gt;\"/>\n" +
+                "    </createTable>\n" +
+                "</changeSet>\n";
+
+        byte[] changeLog = new LiquibaseXmlPreProcessor().preProcessToBytes("test", "1.0.0", source);
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(changeLog));
+
+        Element root = doc.getDocumentElement();
+        assertEquals("databaseChangeLog", root.getTagName());
+
+        Element changeSet = (Element) root.getElementsByTagName("changeSet").item(0);
+        assertEquals("custom", changeSet.getAttribute("id"));
+        assertEquals("test", changeSet.getAttribute("author"));
+
+        NodeList columns = changeSet.getElementsByTagName("column");
+        assertEquals(3, columns.getLength());
+
+        Element id = (Element) columns.item(0);
+        assertFalse(id.hasAttribute("primaryKey"));
+        assertFalse(id.hasAttribute("nullable"));
+        Element idConstraints = (Element) id.getElementsByTagName("constraints").item(0);
+        assertEquals("true", idConstraints.getAttribute("primaryKey"));
+        assertEquals("false", idConstraints.getAttribute("nullable"));
+
+        // Attributes of the existing constraints element are preferred
+        Element name = (Element) columns.item(1);
+        assertEquals(1, name.getElementsByTagName("constraints").getLength());
+        Element nameConstraints = (Element) name.getElementsByTagName("constraints").item(0);
+        assertEquals("false", nameConstraints.getAttribute("unique"));
+        assertEquals("false", nameConstraints.getAttribute("nullable"));
+
+        Element state = (Element) columns.item(2);
+        assertEquals("<none>", state.getAttribute("defaultValue"));
+        assertEquals(0, state.getElementsByTagName("constraints").getLength());
+
+        assertEquals(new String(changeLog, "UTF-8"), new LiquibaseXmlPreProcessor().preProcess("test", "1.0.0", source));
+    }
+
+}
@@ -0,0 +1,77 @@
+package io.github.gitbucket.solidbase.migration;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+public class MigrationResourceIndexTest {
+
+    @Test
+    public void testGetResource(){
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        // listed in META-INF/solidbase/resources.idx
+        URL url = MigrationResourceIndex.getResource(classLoader, "test_1.0.0.xml");
+        assertEquals(classLoader.getResource("test_1.0.0.xml"), url);
+
+        assertNull(MigrationResourceIndex.getResource(classLoader, "test_1.0.0_h2.xml"));
+    }
+
+    @Test
+    public void testFindFirst(){
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        assertEquals("test_1.0.0.xml", MigrationResourceIndex.findFirst(classLoader,
+                Arrays.asList("test_1.0.0_h2.xml", "test_1.0.0.xml")));
+        assertNull(MigrationResourceIndex.findFirst(classLoader, Arrays.asList("test_2.0.0_h2.xml", "test_2.0.0.xml")));
+    }
+
+    @Test
+    public void testMissNotCached() throws Exception {
+        Path directory = Files.createTempDirectory("solidbase-miss");
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ directory.toUri().toURL() }, null)) {
+            assertNull(MigrationResourceIndex.getResource(classLoader, "test_1.0.0.sql"));
+
+            Files.write(directory.resolve("test_1.0.0.sql"), "added".getBytes(StandardCharsets.UTF_8));
+            assertEquals("added", readResourceAsString(classLoader, "test_1.0.0.sql"));
+        } finally {
+            Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(path -> ignoreException(() -> Files.delete(path)));
+        }
+    }
+
+    @Test
+    public void testIndexedAndNotIndexed() throws Exception {
+        Path first = Files.createTempDirectory("solidbase-first");
+        Path second = Files.createTempDirectory("solidbase-second");
+        try {
+            Files.write(first.resolve("test_1.0.0.sql"), "first".getBytes(StandardCharsets.UTF_8));
+            Files.write(second.resolve("test_1.0.0.sql"), "second".getBytes(StandardCharsets.UTF_8));
+            Files.createDirectories(second.resolve("META-INF/solidbase"));
+            Files.write(second.resolve(MigrationResourceIndex.INDEX_PATH),
+                    "test_1.0.0.sql\ntest_1.0.0_h2.sql\n".getBytes(StandardCharsets.UTF_8));
+
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[]{ first.toUri().toURL(), second.toUri().toURL() }, null)) {
+                // The directory without an index takes precedence
+                assertEquals("first", readResourceAsString(classLoader, "test_1.0.0.sql"));
+                // Listed but doesn't exist
+                assertFalse(MigrationResourceIndex.exists(classLoader, "test_1.0.0_h2.sql"));
+                assertEquals("test_1.0.0.sql", MigrationResourceIndex.findFirst(classLoader,
+                        Arrays.asList("test_1.0.0_h2.sql", "test_1.0.0.sql")));
+            }
+        } finally {
+            for(Path directory: Arrays.asList(first, second)){
+                Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(path -> ignoreException(() -> Files.delete(path)));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package io.github.gitbucket.solidbase.migration;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+public class MigrationSessionTest {
+
+    @Test
+    public void testParameterTypes() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:session1", "sa", "sa")) {
+            updateDatabase(conn, "CREATE TABLE ITEM (ID BIGINT, NAME VARCHAR(10), PRICE DECIMAL(10, 2), " +
+                    "DATA VARBINARY(10), CREATED TIMESTAMP, RELEASED DATE, ENABLED BOOLEAN)");
+
+            LocalDateTime created = LocalDateTime.of(2020, 1, 2, 3, 4, 5);
+            try (MigrationSession session = new MigrationSession(conn, 0)) {
+                session.update("INSERT INTO ITEM VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        10000000000L, null, new BigDecimal("12.34"), new byte[]{ 1, 2 }, created, LocalDate.of(2020, 1, 3), true);
+                session.update("INSERT INTO ITEM VALUES (?, ?, ?, ?, ?, ?, ?)",
+                        2L, "name", null, null, Timestamp.valueOf(created), null, false);
+
+                assertEquals(Long.valueOf(10000000000L), session.selectLong("SELECT ID FROM ITEM WHERE PRICE = ?", new BigDecimal("12.34")));
+                assertEquals(Long.valueOf(10000000000L), session.selectLong("SELECT ID FROM ITEM WHERE DATA = ?", (Object) new byte[]{ 1, 2 }));
+                assertEquals(Integer.valueOf(2), session.selectInt("SELECT COUNT(*) FROM ITEM WHERE CREATED = ?", created));
+                assertEquals("name", session.selectString("SELECT NAME FROM ITEM WHERE ENABLED = ?", false));
+                assertNull(session.selectString("SELECT NAME FROM ITEM WHERE ID = ?", 10000000000L));
+                assertNull(session.selectString("SELECT NAME FROM ITEM WHERE ID = ?", 3L));
+            }
+
+            // MigrationUtils supports the same types
+            assertEquals(Integer.valueOf(1), selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM WHERE ID = ? AND RELEASED = ?",
+                    10000000000L, LocalDate.of(2020, 1, 3)));
+        }
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:session2", "sa", "sa")) {
+            updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY, NAME VARCHAR(10))");
+
+            try (MigrationSession session = new MigrationSession(conn, 2)) {
+                for(int i = 1; i <= 5; i++){
+                    session.addBatch("INSERT INTO ITEM (ID, NAME) VALUES (?, ?)", i, "item" + i);
+                }
+                // Executed after pending inserts
+                session.addBatch("UPDATE ITEM SET NAME = ? WHERE ID = ?", "updated", 5);
+                session.executeBatch();
+
+                List<String> names = session.select("SELECT NAME FROM ITEM ORDER BY ID", rs -> rs.getString(1));
+                assertEquals(Arrays.asList("item1", "item2", "item3", "item4", "updated"), names);
+
+                // Pending batches are executed before queries
+                session.addBatch("DELETE FROM ITEM WHERE ID = ?", 1);
+                assertEquals(Integer.valueOf(4), session.selectInt("SELECT COUNT(*) FROM ITEM"));
+            }
+        }
+    }
+
+    @Test
+    public void testStatementCache() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:session3", "sa", "sa")) {
+            updateDatabase(conn, "CREATE TABLE ITEM (ID INT PRIMARY KEY)");
+
+            try (MigrationSession session = new MigrationSession(conn, 0, 1, null)) {
+                for(int i = 0; i < 3; i++){
+                    session.update("INSERT INTO ITEM VALUES (?)", i);
+                    // Evicts the INSERT statement
+                    assertEquals(Integer.valueOf(i + 1), session.selectInt("SELECT COUNT(*) FROM ITEM"));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package io.github.gitbucket.solidbase.migration;
+
+import liquibase.change.AddColumnConfig;
+import liquibase.change.Change;
+import liquibase.change.core.AddColumnChange;
+import liquibase.change.core.AddForeignKeyConstraintChange;
+import liquibase.change.core.CreateIndexChange;
+import liquibase.database.Database;
+import liquibase.database.core.H2Database;
+import liquibase.database.core.MySQLDatabase;
+import liquibase.database.core.PostgresDatabase;
+import liquibase.sql.Sql;
+import liquibase.sqlgenerator.SqlGeneratorFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OnlineDdlRewriterTest {
+
+    @Test
+    public void testPostgreSQL(){
+        Database database = new PostgresDatabase();
+        OnlineDdlRewriter rewriter = new OnlineDdlRewriter(database);
+
+        List<String> index = rewrite(database, rewriter, createIndex());
+        assertEquals(1, index.size());
+        assertTrue(index.get(0), index.get(0).startsWith("CREATE INDEX CONCURRENTLY "));
+        assertTrue(StatementExecutor.requiresAutoCommit(index.get(0)));
+
+        List<String> fk = rewrite(database, rewriter, addForeignKey());
+        assertEquals(2, fk.size());
+        assertTrue(fk.get(0), fk.get(0).endsWith(" NOT VALID"));
+        assertEquals("ALTER TABLE issue_comment VALIDATE CONSTRAINT fk_issue", fk.get(1));
+
+        rewrite(database, rewriter, addColumn());
+        assertTrue(rewriter.getBlockingStatements().isEmpty());
+    }
+
+    @Test
+    public void testPostgreSQLInTransaction(){
+        Database database = new PostgresDatabase();
+        OnlineDdlRewriter rewriter = new OnlineDdlRewriter(database, true);
+
+        // CREATE INDEX CONCURRENTLY can't be executed in a transaction
+        List<String> index = rewrite(database, rewriter, createIndex());
+        assertFalse(index.get(0), StatementExecutor.requiresAutoCommit(index.get(0)));
+        assertEquals(index, rewriter.getBlockingStatements());
+
+        List<String> fk = rewrite(database, rewriter, addForeignKey());
+        assertTrue(fk.get(0), fk.get(0).endsWith(" NOT VALID"));
+    }
+
+    @Test
+    public void testMySQL(){
+        Database database = new MySQLDatabase();
+        OnlineDdlRewriter rewriter = new OnlineDdlRewriter(database);
+
+        List<String> index = rewrite(database, rewriter, createIndex());
+        assertTrue(index.get(0), index.get(0).endsWith(" ALGORITHM=INPLACE LOCK=NONE"));
+
+        List<String> column = rewrite(database, rewriter, addColumn());
+        assertTrue(column.get(0), column.get(0).endsWith(", ALGORITHM=INPLACE, LOCK=NONE"));
+
+        // Foreign keys are reported
+        List<String> fk = rewrite(database, rewriter, addForeignKey());
+        assertEquals(fk, rewriter.getBlockingStatements());
+    }
+
+    @Test
+    public void testUnsupportedDatabase(){
+        Database database = new H2Database();
+        OnlineDdlRewriter rewriter = new OnlineDdlRewriter(database);
+
+        List<String> index = rewrite(database, rewriter, createIndex());
+        assertEquals(index, rewriter.getBlockingStatements());
+    }
+
+    private static List<String> rewrite(Database database, OnlineDdlRewriter rewriter, Change change){
+        List<String> sqlList = new ArrayList<>();
+        for(Sql sql: SqlGeneratorFactory.getInstance().generateSql(change.generateStatements(database), database)){
+            sqlList.add(sql.toSql());
+        }
+        return rewriter.rewrite(change, sqlList);
+    }
+
+    private static CreateIndexChange createIndex(){
+        CreateIndexChange change = new CreateIndexChange();
+        change.setTableName("issue");
+        change.setIndexName("idx_issue_user");
+        AddColumnConfig column = new AddColumnConfig();
+        column.setName("user_name");
+        change.addColumn(column);
+        return change;
+    }
+
+    private static AddColumnChange addColumn(){
+        AddColumnChange change = new AddColumnChange();
+        change.setTableName("issue");
+        AddColumnConfig column = new AddColumnConfig();
+        column.setName("priority");
+        column.setType("INT");
+        change.addColumn(column);
+        return change;
+    }
+
+    private static AddForeignKeyConstraintChange addForeignKey(){
+        AddForeignKeyConstraintChange change = new AddForeignKeyConstraintChange();
+        change.setConstraintName("fk_issue");
+        change.setBaseTableName("issue_comment");
+        change.setBaseColumnNames("issue_id");
+        change.setReferencedTableName("issue");
+        change.setReferencedColumnNames("issue_id");
+        return change;
+    }
+
+}
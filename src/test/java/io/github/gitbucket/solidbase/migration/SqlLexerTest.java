@@ -0,0 +1,104 @@
+package io.github.gitbucket.solidbase.migration;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SqlLexerTest {
+
+    private static final String MYSQL_SCRIPT =
+            "CREATE TABLE `a;b` (ID INT); # comment; here\n" +
+            "INSERT INTO `a;b` VALUES ('it\\'s; ok');\n" +
+            "DELIMITER //\n" +
+            "CREATE PROCEDURE P() BEGIN SELECT 1; SELECT 2; END //\n" +
+            "DELIMITER ;\n" +
+            "/*!40101 SET NAMES utf8 */;";
+
+    private static final String SQLSERVER_SCRIPT =
+            "CREATE TABLE [a;b] (ID INT)\n" +
+            "GO\n" +
+            "CREATE PROCEDURE P AS BEGIN\n" +
+            "  SELECT 'GO'\n" +
+            "END\n" +
+            "go\n" +
+            "SELECT 1; SELECT 2\n";
+
+    @Test
+    public void testMySQL(){
+        List<String> result = SqlLexer.split(MYSQL_SCRIPT, SqlLexer.Dialect.MYSQL);
+        assertEquals(Arrays.asList(
+                "CREATE TABLE `a;b` (ID INT)",
+                "INSERT INTO `a;b` VALUES ('it\\'s; ok')",
+                "CREATE PROCEDURE P() BEGIN SELECT 1; SELECT 2; END",
+                "/*!40101 SET NAMES utf8 */"
+        ), result);
+    }
+
+    @Test
+    public void testSqlServer(){
+        List<String> result = SqlLexer.split(SQLSERVER_SCRIPT, SqlLexer.Dialect.SQLSERVER);
+        assertEquals(Arrays.asList(
+                "CREATE TABLE [a;b] (ID INT)",
+                "CREATE PROCEDURE P AS BEGIN\n  SELECT 'GO'\nEND",
+                "SELECT 1",
+                "SELECT 2"
+        ), result);
+    }
+
+    @Test
+    public void testCustomDelimiter(){
+        List<String> result = SqlLexer.split("SELECT 1 $$ SELECT ';$$' $$", SqlLexer.Dialect.DEFAULT.withDelimiter("$$").withDollarQuotes(false));
+        assertEquals(Arrays.asList("SELECT 1", "SELECT ';$$'"), result);
+    }
+
+    @Test
+    public void testSlices(){
+        CharBuffer script = CharBuffer.wrap("SELECT 1; SELECT 2");
+        SqlLexer lexer = new SqlLexer(script);
+        assertTrue(lexer.next());
+        assertEquals(0, lexer.getStart());
+        assertEquals(8, lexer.getEnd());
+        assertTrue(lexer.isTerminated());
+        assertTrue(lexer.next());
+        assertEquals("SELECT 2", lexer.getStatement().toString());
+        assertFalse(lexer.isTerminated());
+        assertFalse(lexer.next());
+    }
+
+    @Test
+    public void testStreaming(){
+        // Statements are split in the same way even if the reader returns a character at a time
+        for(String script: Arrays.asList(MYSQL_SCRIPT, SQLSERVER_SCRIPT)){
+            for(SqlLexer.Dialect dialect: Arrays.asList(SqlLexer.Dialect.MYSQL, SqlLexer.Dialect.SQLSERVER, SqlLexer.Dialect.DEFAULT)){
+                List<String> result = new ArrayList<>();
+                new SqlStatementReader(new OneCharReader(script), dialect).forEachRemaining(result::add);
+                assertEquals(SqlLexer.split(script, dialect), result);
+            }
+        }
+    }
+
+    private static class OneCharReader extends Reader {
+        private final Reader reader;
+
+        OneCharReader(String s){
+            this.reader = new StringReader(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return reader.read(cbuf, off, Math.min(len, 1));
+        }
+
+        @Override
+        public void close(){
+        }
+    }
+
+}
@@ -1,9 +1,26 @@
 package io.github.gitbucket.solidbase.migration;
 
+import io.github.gitbucket.solidbase.Solidbase;
+import liquibase.database.Database;
+import liquibase.database.core.H2Database;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
 
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class SqlMigrationTest {
 
@@ -25,4 +42,55 @@ public class SqlMigrationTest {
         assertEquals("UPDATE USERS SET FLG = 1", result.get(0));
         assertEquals("UPDATE USERS SET FLG = 2", result.get(1));
     }
+
+    @Test
+    public void testSplitMultiStatementSqlWithLiterals(){
+        SqlMigration migration = new SqlMigration();
+
+        List<String> result = migration.splitMultiStatementSql(
+                "INSERT INTO T VALUES ('it''s; ok', \"a;b\");\n" +
+                "-- comment; between statements\n" +
+                "UPDATE T SET A = 1 /* inline; comment */ WHERE B = 2; /* trailing */");
+        assertEquals(2, result.size());
+        assertEquals("INSERT INTO T VALUES ('it''s; ok', \"a;b\")", result.get(0));
+        assertEquals("UPDATE T SET A = 1 /* inline; comment */ WHERE B = 2", result.get(1));
+    }
+
+    @Test
+    public void testSplitMultiStatementSqlWithDollarQuote(){
+        SqlMigration migration = new SqlMigration();
+
+        List<String> result = migration.splitMultiStatementSql(
+                "CREATE FUNCTION F() RETURNS INT AS $body$ BEGIN RETURN 1; END; $body$ LANGUAGE plpgsql;" +
+                "SELECT $1, $$a;b$$");
+        assertEquals(2, result.size());
+        assertEquals("CREATE FUNCTION F() RETURNS INT AS $body$ BEGIN RETURN 1; END; $body$ LANGUAGE plpgsql", result.get(0));
+        assertEquals("SELECT $1, $$a;b$$", result.get(1));
+    }
+
+    @Test
+    public void testReadStatements() throws Exception {
+        Path directory = Files.createTempDirectory("solidbase-sql");
+        try {
+            Files.write(directory.resolve("test_1.0.0.sql"), "UPDATE USERS SET FLG = 1;\nUPDATE USERS SET FLG = 2;".getBytes(StandardCharsets.UTF_8));
+
+            // Statements are split by the subclass
+            SqlMigration migration = new SqlMigration(){
+                @Override
+                protected Iterator<String> readStatements(Database database, Reader reader){
+                    return Arrays.stream(new BufferedReader(reader).lines().collect(Collectors.joining("\n")).split(";\n"))
+                            .iterator();
+                }
+            };
+            try (URLClassLoader cl = new URLClassLoader(new URL[]{ directory.toUri().toURL() }, null)) {
+                Map<String, Object> context = new HashMap<>();
+                context.put(Solidbase.CLASSLOADER, cl);
+                context.put(Solidbase.DATABASE, new H2Database());
+                assertEquals(Arrays.asList("UPDATE USERS SET FLG = 1", "UPDATE USERS SET FLG = 2;"), migration.plan("test", "1.0.0", context));
+            }
+        } finally {
+            Files.walk(directory).sorted(Comparator.reverseOrder()).forEach(path -> ignoreException(() -> Files.delete(path)));
+        }
+    }
+
 }
@@ -0,0 +1,121 @@
+package io.github.gitbucket.solidbase.migration;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static io.github.gitbucket.solidbase.migration.MigrationUtils.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+
+public class StatementExecutorTest {
+
+    @Test
+    public void testBatchExecution() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:batch1", "sa", "sa")) {
+            new StatementExecutor(conn, 2).execute(Arrays.asList(
+                "CREATE TABLE ITEM (ID INT PRIMARY KEY, NAME VARCHAR(10))",
+                "INSERT INTO ITEM VALUES (1, 'a')",
+                "INSERT INTO ITEM VALUES (2, 'b')",
+                "INSERT INTO ITEM VALUES (3, 'c')",
+                "ALTER TABLE ITEM ADD COLUMN FLG INT",
+                "UPDATE ITEM SET FLG = ID"
+            ));
+            assertEquals(3, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+            assertEquals(6, selectIntFromDatabase(conn, "SELECT SUM(FLG) FROM ITEM").intValue());
+        }
+    }
+
+    @Test
+    public void testFailedStatementIndex() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:batch2", "sa", "sa")) {
+            try {
+                new StatementExecutor(conn, 10).execute(Arrays.asList(
+                    "CREATE TABLE ITEM (ID INT PRIMARY KEY)",
+                    "INSERT INTO ITEM VALUES (1)",
+                    "INSERT INTO ITEM VALUES (2)",
+                    "INSERT INTO ITEM VALUES (1)",
+                    "INSERT INTO ITEM VALUES (3)"
+                ));
+                fail();
+            } catch(StatementExecutionException ex){
+                assertEquals(4, ex.getStatementIndex());
+                assertEquals("INSERT INTO ITEM VALUES (1)", ex.getSql());
+            }
+        }
+    }
+
+    @Test
+    public void testAutoCommitStatement() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:autocommit", "sa", "sa")) {
+            conn.createStatement().executeUpdate("CREATE TABLE ITEM (ID INT PRIMARY KEY)");
+            conn.setAutoCommit(false);
+            String createIndex = "CREATE INDEX CONCURRENTLY IDX_ITEM ON ITEM (ID)";
+
+            // Executed as is without online DDL
+            try {
+                new StatementExecutor(conn).execute(Arrays.asList("INSERT INTO ITEM VALUES (1)", createIndex));
+                fail();
+            } catch(StatementExecutionException ex){
+                assertEquals(2, ex.getStatementIndex());
+                conn.rollback();
+                assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+            }
+
+            // Refused without committing in transactional execution
+            try {
+                new StatementExecutor(conn).withOnlineDdl(true).withTransactional(true)
+                        .execute(Arrays.asList("INSERT INTO ITEM VALUES (1)", createIndex));
+                fail();
+            } catch(StatementExecutionException ex){
+                assertEquals(2, ex.getStatementIndex());
+                assertFalse(conn.getAutoCommit());
+                conn.rollback();
+                assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+            }
+        }
+    }
+
+    @Test
+    public void testIsDml(){
+        assertTrue(StatementExecutor.isDml("insert into ITEM values (1)"));
+        assertTrue(StatementExecutor.isDml("-- comment\n /* comment */ UPDATE ITEM SET ID = 1"));
+        assertFalse(StatementExecutor.isDml("CREATE TABLE ITEM (ID INT)"));
+        assertFalse(StatementExecutor.isDml("UPDATED"));
+    }
+
+    @Test
+    public void testCancellation() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:cancel", "sa", "sa")) {
+            CancellationToken token = new CancellationToken();
+            Iterator<String> statements = Arrays.asList(
+                "CREATE TABLE ITEM (ID INT PRIMARY KEY)",
+                "INSERT INTO ITEM VALUES (1)"
+            ).iterator();
+            try {
+                new StatementExecutor(conn).withCancellationToken(token).execute(new Iterator<String>() {
+                    @Override
+                    public boolean hasNext(){
+                        return statements.hasNext();
+                    }
+
+                    @Override
+                    public String next(){
+                        String sql = statements.next();
+                        // Cancelled after the first statement
+                        if(sql.startsWith("INSERT")){
+                            token.cancel();
+                        }
+                        return sql;
+                    }
+                });
+                fail();
+            } catch(CancellationException ex){
+                assertEquals(0, selectIntFromDatabase(conn, "SELECT COUNT(*) FROM ITEM").intValue());
+            }
+        }
+    }
+
+}